@@ -0,0 +1,230 @@
+/*
+ * A cache of best moves that is kept between sessions. Boards are stored in their canonical form (PackedBoard.findCanonicalSymmetry)
+ * so a board and its rotations and reflections share one entry, and the move is stored as it is played on the canonical board.
+ * The newest maxEntries boards are kept in memory in a least recently used map. Every new answer is also appended to a file, so a
+ * crash loses at most the records that were not flushed yet. Loading the file replays the records in order so a later record of a
+ * board replaces an earlier one. When the file holds more than twice as many records as the cache it is rewritten with only the
+ * boards in memory.
+ * File layout (big endian):
+ *		int magic ("2048" best moves), int version, int rows, int columns
+ *		records of 13 bytes: long canonical board, byte best move ordinal on the canonical board, float value of the move
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BestMoveCache implements Closeable
+{
+	static final int MAGIC = 0x32303438;			//"2048"
+	static final int VERSION = 1;
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+	public static File fileFor(int rows, int columns)
+	{
+		//Returns the file the cache of the board size is kept in. The file is in the working directory like "HighScore.dat"
+		return new File("BestMoves" + rows + "x" + columns + ".dat");
+	}
+
+	public static BestMoveCache open(File cacheFile, int rows, int columns, int maxEntries) throws IOException
+	{
+		/*
+		 * Loads the cache file, or creates it if it does not exist, and opens it for appending. Throws an IOException if the file is not
+		 * a cache of boards of the size. A record cut short by a crash is dropped
+		 */
+
+		return new BestMoveCache(cacheFile, rows, columns, maxEntries);
+	}
+
+	public final int TOTAL_ROWS;			//The number of rows of every board in the cache
+	public final int TOTAL_COLUMNS;			//The number of columns of every board in the cache
+
+	public MoveDirection getBestMove(long board)
+	{
+		//Returns the best move of the board or null if it is not in the cache. Counts a hit or a miss
+
+		int symmetry = PackedBoard.findCanonicalSymmetry(board, TOTAL_ROWS, TOTAL_COLUMNS);
+		long canonical = PackedBoard.transform(board, TOTAL_ROWS, TOTAL_COLUMNS, symmetry);
+		Entry entry;
+		synchronized(this)
+		{
+			entry = entries.get(canonical);
+		}
+		if(entry == null)
+		{
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return PackedBoard.untransform(MoveDirection.fromOrdinal(entry.move), symmetry);
+	}
+
+	public void put(long board, MoveDirection bestMove, double value) throws IOException
+	{
+		/*
+		 * Adds the best move of the board to the cache and appends it to the file. Boards with no possible move are not cached. The
+		 * board is still cached in memory for this session when the IOException is thrown
+		 */
+
+		if(bestMove == null)	return;
+		int symmetry = PackedBoard.findCanonicalSymmetry(board, TOTAL_ROWS, TOTAL_COLUMNS);
+		long canonical = PackedBoard.transform(board, TOTAL_ROWS, TOTAL_COLUMNS, symmetry);
+		Entry entry = new Entry((byte)PackedBoard.transform(bestMove, symmetry).ordinal(), (float)value);
+		synchronized(this)
+		{
+			entries.put(canonical, entry);
+			writeRecord(output, canonical, entry);
+			if(++ recordsInFile > 2L * maxEntries)	compact();
+		}
+	}
+
+	public synchronized int size()
+	{
+		//Returns the number of boards in memory
+		return entries.size();
+	}
+
+	public long getHits()		{ return hits.sum(); }
+	public long getMisses()		{ return misses.sum(); }
+
+	public double getHitRate()
+	{
+		//Returns the fraction of lookups that found the board. 0 if nothing was looked up
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double)hitCount / total;
+	}
+
+	public synchronized void flush() throws IOException
+	{
+		//Writes every appended record to the file
+		output.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		output.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%,d boards, %.1f%% hit rate (%,d hits, %,d misses)", size(), getHitRate() * 100, getHits(), getMisses());
+	}
+
+	private static final int HEADER_BYTES = 16;
+	private static final int RECORD_BYTES = 13;
+
+	private final File cacheFile;							//The file the records are appended to
+	private final int maxEntries;							//The most boards kept in memory
+	private final LinkedHashMap<Long, Entry> entries;		//Canonical board to best move in least recently used order
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private DataOutputStream output;						//Appends records to the file
+	private long recordsInFile;								//Number of records in the file, including replaced ones
+
+	private static final class Entry
+	{
+		final byte move;		//Best move ordinal on the canonical board
+		final float value;		//Value of the best move
+
+		Entry(byte move, float value)
+		{
+			this.move = move;
+			this.value = value;
+		}
+	}
+
+	private BestMoveCache(File cacheFile, int rows, int columns, int maxEntries) throws IOException
+	{
+		//Replays the records of the file into memory and opens the file for appending
+
+		this.TOTAL_ROWS = rows;
+		this.TOTAL_COLUMNS = columns;
+		this.cacheFile = cacheFile;
+		this.maxEntries = maxEntries;
+		entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest)
+			{
+				return size() > BestMoveCache.this.maxEntries;
+			}
+		};
+
+		if(cacheFile.length() >= HEADER_BYTES)	readRecords();		//A shorter file was cut short before its first record
+		//Rewrite the file if it is new, too long or ends in a record cut short that the next record would be appended after
+		if(recordsInFile == 0 || recordsInFile > 2L * maxEntries || cacheFile.length() != HEADER_BYTES + recordsInFile * RECORD_BYTES)
+			compact();
+		else	output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile, true)));
+	}
+
+	private void readRecords() throws IOException
+	{
+		//Reads every record of the file in order. Stops at a record that was cut short
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))
+		{
+			if(input.readInt() != MAGIC || input.readInt() != VERSION)
+				throw new IOException(cacheFile + " is not a version " + VERSION + " 2048 best move cache");
+			if(input.readInt() != TOTAL_ROWS || input.readInt() != TOTAL_COLUMNS)
+				throw new IOException(cacheFile + " is a cache of a different board size");
+			while(true)
+			{
+				long board = input.readLong();
+				byte move = input.readByte();
+				float value = input.readFloat();
+				entries.put(board, new Entry(move, value));
+				recordsInFile ++;
+			}
+		}
+		catch(EOFException e)
+		{
+			//The end of the file or a record cut short. Either way every whole record was read
+		}
+	}
+
+	private void compact() throws IOException
+	{
+		/*
+		 * Rewrites the file with only the boards in memory, oldest first so reading it back gives the same order. The new file is
+		 * written next to the old one and renamed over it so a crash never leaves a half written cache
+		 */
+
+		if(output != null)	output.close();
+		File compactedFile = new File(cacheFile.getPath() + ".tmp");
+		try(DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile))))
+		{
+			compacted.writeInt(MAGIC);
+			compacted.writeInt(VERSION);
+			compacted.writeInt(TOTAL_ROWS);
+			compacted.writeInt(TOTAL_COLUMNS);
+			for(Map.Entry<Long, Entry> entry : entries.entrySet())
+				writeRecord(compacted, entry.getKey(), entry.getValue());
+		}
+		if(!compactedFile.renameTo(cacheFile))
+		{
+			cacheFile.delete();
+			if(!compactedFile.renameTo(cacheFile))	throw new IOException(cacheFile + " could not be replaced");
+		}
+		recordsInFile = entries.size();
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile, true)));
+	}
+
+	private static void writeRecord(DataOutputStream out, long board, Entry entry) throws IOException
+	{
+		out.writeLong(board);
+		out.writeByte(entry.move);
+		out.writeFloat(entry.value);
+	}
+}
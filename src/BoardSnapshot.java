@@ -0,0 +1,141 @@
+/*
+ * An immutable copy of the state of a Twenty48Game at one point in time. Snapshots are made by the GameLogicThread that owns the
+ * game and handed to the UI thread, which only ever reads snapshots and never the game itself.
+ * The status of the game is read by the logic thread after every change. When the status is WIN it is read a second time, the same way
+ * the window checked that a move is still possible after the win dialog, and kept as getStatusAfterWin().
+ * In turbo mode a win does not stop the run. isWinDeferred() is true on the first snapshot published after the run pauses or ends so
+ * the user is asked about the win then.
+ * A snapshot can also be made of an earlier state from the GameHistory so the window can show it. Such a snapshot has no status and
+ * can not be undone.
+ * The cells are kept as exponents in chunks of CHUNK_CELLS cells. A snapshot made from the game shares every chunk that did not change
+ * with the snapshot published before it, so publishing a move on a huge board only allocates the chunks the move changed instead of a
+ * copy of the whole board. A chunk that has only ever held empty cells is null, so the empty parts of a huge board take no memory. The
+ * game's cells are still read once per snapshot to find the changes.
+ */
+import twentyFortyEight.Twenty48Game;
+
+public final class BoardSnapshot
+{
+	public final int TOTAL_ROWS;
+	public final int TOTAL_COLUMNS;
+
+	public static final int CHUNK_BITS = 12;
+	public static final int CHUNK_CELLS = 1 << CHUNK_BITS;		//Cells per chunk
+
+	BoardSnapshot(Twenty48Game game, BoardSnapshot previous, Twenty48Game.GameStatus status, Twenty48Game.GameStatus statusAfterWin,
+			boolean winDeferred, long gameNumber, long sequenceNumber)
+	{
+		/*
+		 * Copies the state of the game. The chunks that are the same as in the previous snapshot are shared with it (previous may be
+		 * null). Must be called by the thread that owns the game
+		 */
+
+		TOTAL_ROWS = game.TOTAL_ROWS;
+		TOTAL_COLUMNS = game.TOTAL_COLUMNS;
+		int totalCells = TOTAL_ROWS * TOTAL_COLUMNS;
+		boolean sameSize = previous != null && previous.TOTAL_ROWS == TOTAL_ROWS && previous.TOTAL_COLUMNS == TOTAL_COLUMNS;
+		chunks = new byte[(totalCells + CHUNK_CELLS - 1) >>> CHUNK_BITS][];
+		for(int chunk = 0; chunk < chunks.length; chunk ++)
+		{
+			int first = chunk << CHUNK_BITS;
+			int length = Math.min(CHUNK_CELLS, totalCells - first);
+			byte[] previousChunk = sameSize ? previous.chunks[chunk] : null;
+			byte[] exponents = previousChunk;
+			for(int index = 0; index < length; index ++)
+			{
+				int cell = first + index;
+				byte exponent = GameHistory.exponentOf(game.getCellValue(cell / TOTAL_COLUMNS, cell % TOTAL_COLUMNS));
+				if((exponents == null ? 0 : exponents[index]) == exponent)	continue;
+				if(exponents == previousChunk)	exponents = previousChunk == null ? new byte[length] : previousChunk.clone();	//First change
+				exponents[index] = exponent;
+			}
+			chunks[chunk] = exponents;
+		}
+		score = game.getScore();
+		moveCount = game.getMoveCount();
+		undoPossible = game.isUndoPossible();
+		this.status = status;
+		this.statusAfterWin = statusAfterWin;
+		this.winDeferred = winDeferred;
+		this.gameNumber = gameNumber;
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	BoardSnapshot(int rows, int columns, int[] values, int score, int moveCount, long gameNumber)
+	{
+		//Makes a snapshot of an earlier state of a game from its values, values[row * columns + column]. The values are copied
+
+		TOTAL_ROWS = rows;
+		TOTAL_COLUMNS = columns;
+		int totalCells = rows * columns;
+		chunks = new byte[(totalCells + CHUNK_CELLS - 1) >>> CHUNK_BITS][];
+		for(int chunk = 0; chunk < chunks.length; chunk ++)
+		{
+			int first = chunk << CHUNK_BITS;
+			int length = Math.min(CHUNK_CELLS, totalCells - first);
+			for(int index = 0; index < length; index ++)
+			{
+				byte exponent = GameHistory.exponentOf(values[first + index]);
+				if(exponent == 0)	continue;
+				if(chunks[chunk] == null)	chunks[chunk] = new byte[length];
+				chunks[chunk][index] = exponent;
+			}
+		}
+		this.score = score;
+		this.moveCount = moveCount;
+		undoPossible = false;
+		status = null;
+		statusAfterWin = null;
+		winDeferred = false;
+		this.gameNumber = gameNumber;
+		sequenceNumber = -1;
+	}
+
+	public int getCellValue(int row, int column)
+	{
+		//Returns the value of a cell. Row 0 is the bottom row like a Twenty48Game
+		int cell = row * TOTAL_COLUMNS + column;
+		byte[] chunk = chunks[cell >>> CHUNK_BITS];
+		byte exponent = chunk == null ? 0 : chunk[cell & (CHUNK_CELLS - 1)];
+		return exponent == 0 ? 0 : 1 << exponent;
+	}
+
+	public int[] copyValues()
+	{
+		//Returns a copy of every cell value. values[row * TOTAL_COLUMNS + column] is the value of a cell
+		int[] values = new int[TOTAL_ROWS * TOTAL_COLUMNS];
+		for(int row = 0; row < TOTAL_ROWS; row ++)
+			for(int column = 0; column < TOTAL_COLUMNS; column ++)
+				values[row * TOTAL_COLUMNS + column] = getCellValue(row, column);
+		return values;
+	}
+
+	public int getScore()							{ return score; }
+	public int getMoveCount()						{ return moveCount; }
+	public boolean isUndoPossible()					{ return undoPossible; }
+	public Twenty48Game.GameStatus getStatus()		{ return status; }
+	public Twenty48Game.GameStatus getStatusAfterWin()	{ return statusAfterWin; }
+	public boolean isWinDeferred()					{ return winDeferred; }
+
+	public long getGameNumber()
+	{
+		//Returns which game the snapshot is of. The number goes up every time a different game is loaded
+		return gameNumber;
+	}
+
+	public long getSequenceNumber()
+	{
+		//Returns the order the snapshot was made in. A larger number is a newer snapshot
+		return sequenceNumber;
+	}
+
+	private final byte[][] chunks;		//Exponents of the cells, cell row * TOTAL_COLUMNS + column is in chunk cell >>> CHUNK_BITS. Null when empty
+	private final int score;
+	private final int moveCount;
+	private final boolean undoPossible;
+	private final Twenty48Game.GameStatus status;
+	private final Twenty48Game.GameStatus statusAfterWin;
+	private final boolean winDeferred;
+	private final long gameNumber;
+	private final long sequenceNumber;
+}
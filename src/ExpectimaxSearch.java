@@ -0,0 +1,113 @@
+/*
+ * Finds the best move of a packed board with a depth limited expectimax search. A max node tries every move, a chance node averages
+ * over every empty cell getting a 2 (90%) or a 4 (10%), and the leaves are scored with HeuristicWeights.
+ * Chance nodes are cached in a TranspositionTable keyed by the board after the move. Only chance nodes are cached because the same
+ * long can be a board after a move and a board after a spawn and the two have different values.
+ * The four moves of the root are searched in parallel and every thread shares the same table.
+ */
+import java.util.Arrays;
+
+public class ExpectimaxSearch
+{
+	public static final double MIN_PROBABILITY = 1e-4;		//Spawns less likely than this are scored without searching deeper
+
+	public ExpectimaxSearch(int rows, int columns, TranspositionTable table, HeuristicWeights weights)
+	{
+		//Creates a search of boards of the size. Throws an IllegalArgumentException if the board can not be packed
+		if(!PackedBoard.fits(rows, columns))	throw new IllegalArgumentException("Only boards of at most " + PackedBoard.MAX_CELLS + " cells can be searched");
+		this.rows = rows;
+		this.columns = columns;
+		this.totalCells = rows * columns;
+		this.table = table;
+		this.weights = weights;
+	}
+
+	public MoveDirection findBestMove(long board)
+	{
+		//Returns the best move searched to a depth picked from the number of empty cells or null if no move is possible
+		return findBestMove(board, defaultDepth(board));
+	}
+
+	public MoveDirection findBestMove(long board, int depth)
+	{
+		//Returns the best move searched depth moves ahead or null if no move is possible
+
+		return bestOf(evaluateMoves(board, depth));
+	}
+
+	public static MoveDirection bestOf(double[] moveValues)
+	{
+		//Returns the move with the highest value in the values returned by evaluateMoves() or null if no move is possible
+		MoveDirection bestMove = null;
+		for(MoveDirection direction : MoveDirection.values())
+			if(!Double.isNaN(moveValues[direction.ordinal()]) && (bestMove == null || moveValues[direction.ordinal()] > moveValues[bestMove.ordinal()]))
+				bestMove = direction;
+		return bestMove;
+	}
+
+	public double[] evaluateMoves(long board, int depth)
+	{
+		//Returns the value of every move indexed by the move ordinal. Moves that are not possible are NaN
+		return Arrays.stream(MoveDirection.values()).parallel().mapToDouble(direction->
+		{
+			long moved = PackedBoard.move(board, rows, columns, direction);
+			return moved == board ? Double.NaN : chanceNode(moved, depth - 1, 1);
+		}).toArray();
+	}
+
+	public int defaultDepth(long board)
+	{
+		//Searches deeper when the board is crowded and there are fewer spawns to average over
+		int emptyCells = PackedBoard.countEmpty(board, totalCells);
+		if(emptyCells > 6)	return 2;
+		if(emptyCells > 3)	return 3;
+		return 4;
+	}
+
+	public TranspositionTable getTable()
+	{
+		return table;
+	}
+
+	private final int rows;
+	private final int columns;
+	private final int totalCells;
+	private final TranspositionTable table;
+	private final HeuristicWeights weights;
+
+	private double maxNode(long board, int depth, double probability)
+	{
+		//Returns the value of the best move or the heuristic value of the board when no move is possible
+
+		double best = Double.NEGATIVE_INFINITY;
+		for(MoveDirection direction : MoveDirection.values())
+		{
+			long moved = PackedBoard.move(board, rows, columns, direction);
+			if(moved != board)	best = Math.max(best, chanceNode(moved, depth - 1, probability));
+		}
+		return best == Double.NEGATIVE_INFINITY ? weights.evaluate(board, rows, columns) : best;
+	}
+
+	private double chanceNode(long board, int depth, double probability)
+	{
+		//Returns the average value over every spawn that can follow the move
+
+		if(depth <= 0 || probability < MIN_PROBABILITY)	return weights.evaluate(board, rows, columns);
+
+		double cachedValue = table.probeValue(board, depth);
+		if(!Double.isNaN(cachedValue))	return cachedValue;
+
+		int emptyCells = PackedBoard.countEmpty(board, totalCells);
+		double total = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+		{
+			if(PackedBoard.getExponent(board, cell) != 0)	continue;
+			double twoProbability = (1 - PackedBoard.SPAWN_FOUR_PROBABILITY) / emptyCells;
+			double fourProbability = PackedBoard.SPAWN_FOUR_PROBABILITY / emptyCells;
+			total += twoProbability * maxNode(PackedBoard.setExponent(board, cell, 1), depth, probability * twoProbability);
+			total += fourProbability * maxNode(PackedBoard.setExponent(board, cell, 2), depth, probability * fourProbability);
+		}
+		table.store(board, depth, total);
+		return total;
+	}
+}
@@ -9,10 +9,14 @@
  * The highest score is retrieved from the file "HighScore.dat"
  * The HBox below the scores panel is the command panel. The command panel contains the buttons described previously.
  * undo provide animations when pressed. The undo button is only present when an undo is possible. 
+ * Every change to the game is made by a GameLogicThread that owns the Twenty48Game. The window never touches the game. Instead it
+ * renders the newest BoardSnapshot published by the logic thread once per frame, so slow moves or saves never freeze the window.
  * The buttons are made with custom regions and programmatically drawn graphics. The buttons are also hooked to the following keyboard keys
  * Alt + S = Save; Alt + L = Load; Alt + X = Exit; Alt + H = Help; Ctrl + Z = undo;
+ * Alt + T = Hint; Alt + B = Browse saves; Alt + R = Save replay; Alt + M = Next theme; Alt + A = Autoplay
+ * A timeline slider under the board shows any earlier move of the game without changing it.
  * The grid pane contains the cell values of the game. Each cell is a custom class sized to fit the screen based on the original
- * dimension of 132x132.
+ * dimension of 132x132. Boards too big for their cells to be readable are shown in a scrollable BoardViewport instead.
  * When the user wins a dialog is displayed asking them if they want to continue. If they choose not to the game is ended
  * When the game ends either by the user's choice or because no other moves are possible then a custom pop-up dialog is displayed. 
  * If the user has made a new high score then they are given a 'tada' sound and a message for 5 seconds when the end game dialog is
@@ -29,31 +33,47 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import fxExtras.FloppyRegion;
 import fxExtras.LabelInBlock;
+import javafx.animation.AnimationTimer;
 import javafx.animation.FadeTransition;
 import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
 import javafx.animation.RotateTransition;
 import javafx.animation.ScaleTransition;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.geometry.Point3D;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.CacheHint;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Dialog;
+import javafx.scene.control.DialogPane;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.control.Tooltip;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
@@ -67,6 +87,7 @@ import javafx.scene.shape.Polygon;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.scene.transform.Scale;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Screen;
@@ -128,13 +149,22 @@ public class Game2048GUI
 					"\t-To display an in-game help menu press Alt + H.\n"+
 					"\t-To save the current game press Alt + S.\n" +
 					"\t-To load a previously saved game press Alt + L.\n" +
+					"\t-To browse the games saved in the saves folder press Alt + B.\n" +
+					"\t-To save a replay of every move of this game press Alt + R.\n" +
+					"\t-To switch to the next color theme press Alt + M.\n" +
+					"\t-To get a hint for your next move press Alt + T.\n" +
+					"\t-To let the computer play (or stop it) press Alt + A.\n" +
 					"Enjoy the game and good luck!!!");
 		helpAlert.show();
 	}
 	
 	private Stage gameStage;					//The window of the game. Created when the class is constructed
-	private CellPane2048 [][] gameCells;		//An array of UI elements that represent the cell values
-	private Twenty48Game currentGame;			//The current instance of the 2048 game. Contains on the logic for the game
+	private CellPane2048 [][] gameCells;		//An array of UI elements that represent the cell values. Null when a viewport is used
+	private BoardViewport boardViewport;		//Shows part of a board that is too big to fit on the screen. Null when gameCells is used
+	private ScaledBoard scaledBoard;			//Scales gameCells or boardViewport to the size of the window
+	private GameLogicThread logicThread;		//The thread that owns the current Twenty48Game and makes every change to it
+	private BoardSnapshot currentGame;			//The snapshot of the game that is displayed. The game itself is only used by logicThread
+	private AnimationTimer snapshotRenderer;	//Renders the newest snapshot published by logicThread once per frame
 	private LabelInBlock displayedScore;		//A box that displays "SCORE" with the current score below it
 	private LabelInBlock displayedHighScore;	//A box that displays "HIGH SCORE" with the current high score below it
 	private LabelInBlock displayedMoveCount;	//A box that displays "MOVE COUNT" with the current move count below it
@@ -146,6 +176,71 @@ public class Game2048GUI
 	//This value is only true if a move resulted in the game ending
 	private boolean askToUndoMove = false;				
 	
+	public void setTurboMode(boolean enabled, int renderEveryNth)
+	{
+		/*
+		 * Turns turbo mode on or off for bots that make moves faster than the screen refreshes. In turbo mode the board is drawn at most
+		 * once per frame and only every renderEveryNth move, a win is not announced until the moves stop coming, and the window title
+		 * shows the number of moves made per second. Bots that can send whole batches should use applyMoves() instead
+		 */
+		
+		logicThread.setTurboMode(enabled, renderEveryNth);
+		if(!enabled)	gameStage.setTitle(null);
+	}
+	
+	public void setAutoplay(boolean enabled)
+	{
+		/*
+		 * Turns autoplay on or off. Autoplay runs in turbo mode and makes moves as fast as the logic thread can until the game is won,
+		 * lost or autoplay is turned off
+		 */
+		
+		if(enabled)		logicThread.setTurboMode(true, AUTOPLAY_RENDER_EVERY_NTH);
+		logicThread.setAutoplay(enabled);
+		if(!enabled)	logicThread.setTurboMode(false, 1);
+	}
+	
+	private static final int AUTOPLAY_RENDER_EVERY_NTH = 64;	//Autoplay publishes a snapshot every 64 moves
+	
+	public CompletableFuture<List<MoveResult>> applyMoves(List<MoveDirection> moves)
+	{
+		/*
+		 * Makes a batch of moves for a bot without sending key events. The moves are made by the logic thread as one command that stops
+		 * at the first win or loss, and the board is drawn and its status checked once after the batch. May be called from any thread.
+		 * The future is completed with the result of every move that was tried, in order. Its dependent actions run on the logic
+		 * thread, so a bot should not wait for the window in them
+		 */
+		
+		if(Platform.isFxApplicationThread())	showCurrentMove();		//Like an arrow key, a batch goes back to the current move
+		else									Platform.runLater(this::showCurrentMove);
+		return logicThread.submitMoves(moves);
+	}
+	
+	public long getStartupNanos()
+	{
+		/*
+		 * Returns the number of nanoseconds between the start of the constructor and the first frame of the game window being
+		 * rendered. Returns -1 if the first frame has not been rendered yet
+		 */
+
+		return startupNanos;
+	}
+
+	public void setOnFirstFrame(Runnable firstFrameHandler)
+	{
+		/*
+		 * Registers a single handler to be run on the UI thread once the first frame of the game window has been rendered.
+		 * If the first frame has already been rendered the handler is run immediately
+		 */
+
+		this.firstFrameHandler = firstFrameHandler;
+		if(startupNanos >= 0 && firstFrameHandler != null)	firstFrameHandler.run();
+	}
+
+	private long constructionStartNanos;		//The value of System.nanoTime() when the constructor was entered
+	private long startupNanos = -1;				//Time from construction to the first rendered frame. -1 until measured
+	private Runnable firstFrameHandler;			//Handler run once the first frame has been rendered
+
 	private Game2048GUI(Twenty48Game gameInstance) throws ClassNotFoundException, IOException
 	{
 		/*
@@ -154,10 +249,21 @@ public class Game2048GUI
 		 * gameInstace. If the gameInstance is null then the user is prompted to load a saved game file. If an error occurs
 		 * when loading a game the exception is thrown
 		 */
-		
+
+		constructionStartNanos = System.nanoTime();						//Start of the startup time measurement
+		preloadMedia();													//Load the tada sound in the background before it is needed
 		gameStage= new Stage();											//Create the game window;
-		if(gameInstance == null) 	currentGame = loadGame(gameStage);	//Load the game since the argument is null 
-		else					 	currentGame = gameInstance;			//The game will be the supplied argument
+		gameStage.outputScaleXProperty().addListener((observable, oldScale, newScale)->
+		{
+			if(scaledBoard != null)	scaledBoard.rasterizeWhenSettled();	//Moved to a screen with another DPI
+		});
+		if(gameInstance == null) 	gameInstance = loadGame(gameStage);	//Load the game since the argument is null 
+		preloadBestMoveCache(gameInstance.TOTAL_ROWS, gameInstance.TOTAL_COLUMNS);	//Load the hints of earlier sessions in the background
+		
+		//Hand the game to the logic thread. From now on the window only sees snapshots of the game
+		logicThread = new GameLogicThread(gameInstance, Game2048GUI::showError);
+		currentGame = logicThread.takeSnapshot();
+		logicThread.start();
 		
 		/*
 		 * When the window close event is fired the event is ignored. Instead a end game dialog is displayed. If the user selects
@@ -175,17 +281,41 @@ public class Game2048GUI
 			//and allow the window to close
 			if(!endGameWindow.getResult())
 			{
+				snapshotRenderer.stop();
+				logicThread.shutdown();
 				if(windowCloseEventHandler != null)
 					windowCloseEventHandler.handle(new WindowEvent(gameStage,WindowEvent.WINDOW_CLOSE_REQUEST));
 				return;
 			}
 			e.consume();				//Don't close the window yet. The user decided to undo their last move
 			askToUndoMove = false;		//Reset ask to undo last move
-			undoButton.handle(null);	//Pretend the undo button being clicked
+			undoLastMove();				//Pretend the undo button being clicked
 		});
 		
 		//Initialize the UI
 		this.initializeGamePane();
+		
+		//Every frame render the newest snapshot if the game changed since the last frame. Snapshots published between two frames are
+		//never rendered so the logic thread can make moves faster than the screen refreshes
+		snapshotRenderer = new AnimationTimer()
+		{
+			@Override
+			public void handle(long now)
+			{
+				BoardSnapshot newSnapshot = logicThread.takeSnapshot();
+				if(newSnapshot != null && (historyShown && newSnapshot.getGameNumber() == currentGame.getGameNumber()))
+					heldSnapshot = newSnapshot;					//Keep showing the earlier move. The new snapshot is rendered when the user comes back
+				else if(newSnapshot != null)
+				{
+					historyShown = false;
+					heldSnapshot = null;
+					updateBoard(newSnapshot);
+				}
+				updateTimeline();
+				reportMovesPerSecond(now);
+			}
+		};
+		snapshotRenderer.start();
 	}
 	
 	private void initializeGamePane()
@@ -202,61 +332,60 @@ public class Game2048GUI
 		
 		//Create an HBox that holds the current score, high score, and the move count.
 		HBox hbScoresPanel = new HBox();
-		hbScoresPanel.setStyle("-fx-alignment: center; -fx-spacing: 5;"); 							//Align center and pad controls
+		hbScoresPanel.getStyleClass().add("scores-panel"); 											//Align center and pad controls
 		hbScoresPanel.getChildren().addAll(displayedMoveCount,displayedScore,displayedHighScore);	//Add current score, high score, move count
 		
 		//Create a HBox that holds an Undo and Reset button. Will be aligned on the right side of the screen by adding this to the right
 		//pane of a border pane
+		//The buttons are not created until after the board is shown. The panels are sized to the buttons so the layout does not shift
 		HBox hbRightCommandPanel = new HBox();
-		hbRightCommandPanel.setStyle("-fx-alignment: center-right; -fx-spacing: 5; -fx-padding: 5 0 5 0;");	//Align right and pad controls
-		undoButton = currentGame.isUndoPossible() ? new UndoButton(false) : new UndoButton(true);
-		hbRightCommandPanel.getChildren().addAll(undoButton);								//Add undo and reset button
+		hbRightCommandPanel.getStyleClass().add("command-panel-right");								//Align right and pad controls
+		hbRightCommandPanel.setMinHeight(50);
+		undoButton = null;
 		
 		//Create a HBox that holds a load, save, exit and help button. Will be aligned on the left side of the screen by adding this to the
 		//left pane of a border pane
 		HBox hbLeftCommandPanel = new HBox();
-		hbLeftCommandPanel.setStyle("-fx-alignment: center-left; -fx-spacing: 5; -fx-padding: 5 0 5 0;");	//Align left and pad controls
-		hbLeftCommandPanel.getChildren().addAll(new LoadButton(),new SaveButton(), new ExitButton(), new HelpButton());
-		
-		//Create the cells and GridPane for the game board
-		GridPane gameGrid = new GridPane();
+		hbLeftCommandPanel.getStyleClass().add("command-panel-left");								//Align left and pad controls
+		hbLeftCommandPanel.setMinHeight(50);
 		
-		/*
-		 * Calculate the cell border size. Since the game board can be made with more than just 4x4 the cellBorderSize and
-		 * cellSideLength are proportional to the values of the a 4x4 cell
-		 */
-		double cellBorderSize = CellPane2048.calculateBorderSize(currentGame.TOTAL_ROWS,currentGame.TOTAL_COLUMNS);
+		//Would the cells be too small to read if the whole board was fit on the screen? If so only show the cells that fit in a
+		//scrollable and zoomable viewport. Otherwise create a GridPane that holds every cell
+		Region gameBoard;
+		if(CellPane2048.calculateCellSideLength(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS) < BoardViewport.MIN_READABLE_CELL_SIDE)
+			gameBoard = initializeBoardViewport();
+		else
+			gameBoard = initializeGameGrid();
 		
-		//Set the background color of the grid and make the corner of the outside of the grid rounded by a factor proportional to the same
-		//roundness of the cells
-		gameGrid.setStyle("-fx-alignment: center; -fx-background-color: gray; -fx-background-radius:" + cellBorderSize + ";");
+		//Create a slider under the board to show earlier moves and a label that shows which move is shown
+		timelineSlider = new Slider(0, 0, 0);
+		timelineSlider.setFocusTraversable(false);			//The arrow keys make moves, they never move the slider
+		timelineSlider.setMaxWidth(Double.MAX_VALUE);
+		timelineSlider.valueProperty().addListener((observable, oldValue, newValue)->
+		{
+			if(!updatingTimeline)	requestedHistoryState = (int)Math.round(newValue.doubleValue());
+		});
+		timelineLabel = new Label();
+		timelineLabel.setMinWidth(Region.USE_PREF_SIZE);
+		HBox hbTimeline = new HBox(timelineSlider, timelineLabel);
+		hbTimeline.getStyleClass().add("timeline-panel");
+		HBox.setHgrow(timelineSlider, Priority.ALWAYS);
+		historyShown = false;
+		heldSnapshot = null;
 		
-		//Calculate the size the grid needs to be to fit all the cells. Set the min and max of the grid to this size so the grid
-		//will not resize and change the bounds of the background
-		double singleCellSideLength = CellPane2048.getCellSize(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS);
-		double desiredWidth = singleCellSideLength * currentGame.TOTAL_COLUMNS + 2 * cellBorderSize; //Width of all cells and the border
-		double desiredHeight = singleCellSideLength * currentGame.TOTAL_ROWS + 2 * cellBorderSize;	 //Height of all cells and the border
-		gameGrid.setMaxSize(desiredWidth, desiredHeight);
-		gameGrid.setMinSize(desiredWidth, desiredHeight);
+		//Lay the board out once at its reference size and scale it to whatever space the window gives it
+		scaledBoard = new ScaledBoard(gameBoard);
+		VBox.setVgrow(scaledBoard, Priority.ALWAYS);
 		
-		//Initialize the game cells
-		gameCells = new CellPane2048[currentGame.TOTAL_ROWS][currentGame.TOTAL_COLUMNS];
-		for(int row = 0; row < currentGame.TOTAL_ROWS; row ++)
-			for(int column = 0; column < currentGame.TOTAL_COLUMNS; column ++)
-			{
-				//Create the game cell with corresponding cell value in the currentGame
-				gameCells[row][column] = new CellPane2048(currentGame.getCellValue(row, column),currentGame.TOTAL_ROWS,currentGame.TOTAL_COLUMNS);
-				//Since currentGame [0,0] is bottom left the grid pane [0,0] is top left so add in the opposite order
-				gameGrid.add(gameCells[row][column],column, currentGame.TOTAL_ROWS - row);
-			}
-		
-		//Create a vbox to hold the scores, a border pane which contains the command panels, and the game grid.
-		VBox vbGameBox = new VBox(hbScoresPanel,new BorderPane(null,null,hbRightCommandPanel, null, hbLeftCommandPanel),gameGrid);
+		//Create a vbox to hold the scores, a border pane which contains the command panels, the game board and the timeline.
+		VBox vbGameBox = new VBox(hbScoresPanel,new BorderPane(null,null,hbRightCommandPanel, null, hbLeftCommandPanel),scaledBoard,hbTimeline);
 		vbGameBox.setAlignment(Pos.CENTER);
+		HBox.setHgrow(vbGameBox, Priority.ALWAYS);
 		
 		//Create a center HBox to hold the VBox that holds all the UI elements. This will allow for the command buttons to stay in line
 		//with the game grid even when the window is resized
 		HBox hbParent = new HBox();
+		hbParent.getStyleClass().add("game-root");
 		hbParent.getChildren().add(vbGameBox);
 		hbParent.setAlignment(Pos.CENTER);
 	
@@ -265,16 +394,21 @@ public class Game2048GUI
 		{
 			KeyCode code = e.getCode();
 			
-			//If the key pressed was an arrow key and the move was not possible then the UI does not need updated
-			if		(code == KeyCode.LEFT 	&& !currentGame.moveLeft())		return;   
-			else if	(code == KeyCode.RIGHT 	&& !currentGame.moveRight())	return;	 
-			else if	(code == KeyCode.UP 	&& !currentGame.moveUp())		return;
-			else if	(code == KeyCode.DOWN 	&& !currentGame.moveDown())		return;
+			//Was an earlier move being shown? If so an arrow key or an undo goes back to the current move before the move is made
+			if(historyShown && (code == KeyCode.LEFT || code == KeyCode.RIGHT || code == KeyCode.UP || code == KeyCode.DOWN 
+					|| e.isControlDown() && code == KeyCode.Z))
+				showCurrentMove();
+			
+			//Was an arrow key pressed? If so make the move on the logic thread. The board is updated when the new snapshot is published
+			if		(code == KeyCode.LEFT)		logicThread.submitMove(MoveDirection.LEFT);
+			else if	(code == KeyCode.RIGHT)		logicThread.submitMove(MoveDirection.RIGHT);
+			else if	(code == KeyCode.UP)		logicThread.submitMove(MoveDirection.UP);
+			else if	(code == KeyCode.DOWN)		logicThread.submitMove(MoveDirection.DOWN);
 			
 			//Was Ctrl + Z pressed? If so then perform an undo move. The undo button updates the UI so no need to update it in this function
 			if(e.isControlDown() && code == KeyCode.Z)	
 			{
-				undoButton.handle(null);
+				undoLastMove();
 				return;
 			}
 			
@@ -285,7 +419,7 @@ public class Game2048GUI
 				return;
 			}
 			
-			//Was Alt + L pressed to load a game? If so then prompt the user to open a game. Update board will be called
+			//Was Alt + L pressed to load a game? If so then prompt the user to open a game. The board is rebuilt when the game is loaded
 			else if(e.isAltDown()	&& code == KeyCode.L)	openGame();
 			
 			//Was Alt + X pressed to exit the game? If so then fire the close window event
@@ -302,13 +436,304 @@ public class Game2048GUI
 				return;
 			}
 			
-			this.updateBoard();		//Update the UI of the game
+			//Was Alt+T pressed to get a hint? If so display the best move
+			else if(e.isAltDown() && code == KeyCode.T)
+			{
+				showHint();
+				return;
+			}
+			
+			//Was Alt+M pressed? If so switch every window to the next theme
+			else if(e.isAltDown() && code == KeyCode.M)
+			{
+				List<Theme> themes = Theme.getThemes();
+				setTheme(themes.get((themes.indexOf(currentTheme) + 1) % themes.size()));
+				return;
+			}
+			
+			//Was Alt+B pressed? If so show the saved games in the saves directory
+			else if(e.isAltDown() && code == KeyCode.B)
+			{
+				showSaveBrowser();
+				return;
+			}
+			
+			//Was Alt+R pressed? If so prompt the user to save the replay of the game
+			else if(e.isAltDown() && code == KeyCode.R)
+			{
+				saveReplay();
+				return;
+			}
+			
+			//Was Alt+A pressed? If so start autoplay or stop it if it is running
+			else if(e.isAltDown() && code == KeyCode.A)
+			{
+				setAutoplay(!logicThread.isAutoplay());
+				return;
+			}
 		});
 
+		timelineSlider.setOnMouseReleased(e->hbParent.requestFocus());	//Give the keys back to the board once the user lets go
+		
 		//Set the scene for the game window, show it and give focus to the top level control
-		gameStage.setScene(new Scene(hbParent));
+		Scene gameScene = new Scene(hbParent);
+		useTheme(gameScene.getStylesheets());
+		gameStage.setScene(gameScene);
+		
+		/*
+		 * Measure the time from the constructor to the first frame. The post layout listener runs in the pulse that lays the board out,
+		 * before that pulse syncs the scene and renders it, so the clock is stopped by a timer at the start of the next pulse, which
+		 * only begins once the first frame has been rendered
+		 */
+		if(startupNanos < 0)
+		{
+			Runnable[] firstLayoutListener = new Runnable[1];
+			firstLayoutListener[0] = ()->
+			{
+				gameScene.removePostLayoutPulseListener(firstLayoutListener[0]);
+				new AnimationTimer()
+				{
+					@Override
+					public void handle(long now)
+					{
+						stop();
+						startupNanos = System.nanoTime() - constructionStartNanos;
+						if(firstFrameHandler != null)	firstFrameHandler.run();
+					}
+				}.start();
+			};
+			gameScene.addPostLayoutPulseListener(firstLayoutListener[0]);
+		}
+		
 		gameStage.show();
 		hbParent.requestFocus();
+		
+		//Create the buttons once the board has been shown. The graphics of the buttons are prepared once and reused by every window
+		Platform.runLater(()->
+		{
+			undoButton = currentGame.isUndoPossible() ? new UndoButton(false) : new UndoButton(true);
+			hbRightCommandPanel.getChildren().addAll(undoButton);								//Add undo and reset button
+			hbLeftCommandPanel.getChildren().addAll(new LoadButton(),new SaveButton(), new ExitButton(), new HelpButton());
+		});
+	}
+	
+	private BoardViewport initializeBoardViewport()
+	{
+		/*
+		 * Creates a viewport for boards that are too big to fit on the screen at a readable size. The viewport takes up to 5/8 of the
+		 * screen and only creates nodes for the cells that can be seen. The cell values are read from the current game when they are shown
+		 */
+		
+		Rectangle2D screenBounds = Screen.getPrimary().getBounds();
+		gameCells = null;
+		boardViewport = new BoardViewport(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS,
+				screenBounds.getWidth() * 5 / 8, screenBounds.getHeight() * 5 / 8, (row, column)->currentGame.getCellValue(row, column));
+		return boardViewport;
+	}
+	
+	private GridPane initializeGameGrid()
+	{
+		/*
+		 * Creates a grid pane that holds a cell for every cell of the current game. The cells are sized so the whole board fits in 5/8
+		 * of the screen
+		 */
+		
+		boardViewport = null;
+		
+		//Create the cells and GridPane for the game board
+		GridPane gameGrid = new GridPane();
+		
+		/*
+		 * Calculate the cell border size. Since the game board can be made with more than just 4x4 the cellBorderSize and
+		 * cellSideLength are proportional to the values of the a 4x4 cell
+		 */
+		double cellBorderSize = CellPane2048.calculateBorderSize(currentGame.TOTAL_ROWS,currentGame.TOTAL_COLUMNS);
+		
+		//Set the background color of the grid from the theme and make the corner of the outside of the grid rounded by a factor proportional
+		//to the same roundness of the cells. The radius depends on the board size so it is the only style that is not in the stylesheet
+		gameGrid.getStyleClass().add("board");
+		gameGrid.setAlignment(Pos.CENTER);
+		gameGrid.setStyle("-fx-background-radius:" + cellBorderSize + ";");
+		
+		//Calculate the size the grid needs to be to fit all the cells. Set the min and max of the grid to this size so the grid
+		//will not resize and change the bounds of the background
+		double singleCellSideLength = CellPane2048.getCellSize(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS);
+		double desiredWidth = singleCellSideLength * currentGame.TOTAL_COLUMNS + 2 * cellBorderSize; //Width of all cells and the border
+		double desiredHeight = singleCellSideLength * currentGame.TOTAL_ROWS + 2 * cellBorderSize;	 //Height of all cells and the border
+		gameGrid.setMaxSize(desiredWidth, desiredHeight);
+		gameGrid.setMinSize(desiredWidth, desiredHeight);
+		
+		//Initialize the game cells
+		gameCells = new CellPane2048[currentGame.TOTAL_ROWS][currentGame.TOTAL_COLUMNS];
+		for(int row = 0; row < currentGame.TOTAL_ROWS; row ++)
+			for(int column = 0; column < currentGame.TOTAL_COLUMNS; column ++)
+			{
+				//Create the game cell with corresponding cell value in the currentGame
+				gameCells[row][column] = new CellPane2048(currentGame.getCellValue(row, column),currentGame.TOTAL_ROWS,currentGame.TOTAL_COLUMNS);
+				//Since currentGame [0,0] is bottom left the grid pane [0,0] is top left so add in the opposite order
+				gameGrid.add(gameCells[row][column],column, currentGame.TOTAL_ROWS - row);
+			}
+		return gameGrid;
+	}
+	
+	private void updateTimeline()
+	{
+		/*
+		 * Runs once per frame. Shows the earlier move the user moved the slider to, if any, and keeps the slider as long as the history.
+		 * The slider follows the current move unless an earlier move is shown. Seeking is done at most once per frame however fast
+		 * the slider is dragged
+		 */
+		
+		GameHistory history = logicThread.getHistory();
+		if(history.TOTAL_ROWS != currentGame.TOTAL_ROWS || history.TOTAL_COLUMNS != currentGame.TOTAL_COLUMNS)	return;	//Not rendered yet
+		int lastState = history.size() - 1;
+		
+		int requestedState = requestedHistoryState;
+		requestedHistoryState = -1;
+		if(requestedState >= lastState)		showCurrentMove();
+		else if(requestedState >= 0)		showHistoryState(history, requestedState);
+		
+		updatingTimeline = true;
+		timelineSlider.setMax(lastState);
+		if(!historyShown)	timelineSlider.setValue(lastState);
+		updatingTimeline = false;
+		
+		//Only change the label when its text changes so an idle window is not laid out every frame
+		String timelineText = historyShown ? 
+				String.format("Move %,d of %,d", shownHistoryState, lastState) : 
+				String.format("%,d moves, %,d KB history", lastState, history.getMemoryBytes() / 1024);
+		if(!timelineText.equals(timelineLabel.getText()))	timelineLabel.setText(timelineText);
+	}
+	
+	private void showHistoryState(GameHistory history, int state)
+	{
+		//Renders an earlier state of the game from the history. The game is not changed
+		
+		if(historyValues == null || historyValues.length != history.TOTAL_ROWS * history.TOTAL_COLUMNS)
+			historyValues = new int[history.TOTAL_ROWS * history.TOTAL_COLUMNS];
+		if(!historyShown)	liveSnapshot = currentGame;
+		history.seek(state, historyValues);
+		historyShown = true;
+		shownHistoryState = state;
+		renderSnapshot(new BoardSnapshot(history.TOTAL_ROWS, history.TOTAL_COLUMNS, historyValues, history.getScore(state), 
+				history.getMoveCount(state), currentGame.getGameNumber()));
+	}
+	
+	private void showCurrentMove()
+	{
+		/*
+		 * Goes back to showing the current move after an earlier move was shown. A snapshot published while the earlier move was shown
+		 * is rendered and its status checked like any other. Otherwise the snapshot that was shown before is rendered again without
+		 * checking its status a second time
+		 */
+		
+		if(!historyShown)	return;
+		historyShown = false;
+		updatingTimeline = true;
+		timelineSlider.setValue(timelineSlider.getMax());
+		updatingTimeline = false;
+		if(heldSnapshot != null)	updateBoard(heldSnapshot);
+		else						renderSnapshot(liveSnapshot);
+		heldSnapshot = null;
+	}
+	
+	private Slider timelineSlider;				//Picks the move of the game that is shown. The last value is the current move
+	private Label timelineLabel;				//Shows which move is shown and how much memory the history uses
+	private boolean updatingTimeline;			//True while the slider is changed by the window so the change is not taken as the user's
+	private volatile int requestedHistoryState = -1;	//The state the user moved the slider to. -1 once it has been shown
+	private boolean historyShown;				//True while an earlier move is shown instead of the current one
+	private int shownHistoryState;				//The state of the history that is shown while historyShown is true
+	private int[] historyValues;				//Cell values of the shown state. Reused between seeks
+	private BoardSnapshot liveSnapshot;			//The snapshot of the current move that was shown before an earlier move was
+	private BoardSnapshot heldSnapshot;			//The newest snapshot published while an earlier move was shown. Null if none was
+	
+	private void reportMovesPerSecond(long now)
+	{
+		/*
+		 * Shows the number of moves the logic thread makes per second in the window title while in turbo mode. The rate is measured
+		 * over one second intervals
+		 */
+		
+		if(!logicThread.isTurbo())
+		{
+			rateStartNanos = 0;
+			return;
+		}
+		long movesMade = logicThread.getMovesMade();
+		if(rateStartNanos == 0)
+		{
+			rateStartNanos = now;
+			rateStartMoves = movesMade;
+			return;
+		}
+		if(now - rateStartNanos < 1_000_000_000L)	return;
+		double movesPerSecond = (movesMade - rateStartMoves) * 1e9 / (now - rateStartNanos);
+		gameStage.setTitle(String.format("2048 - %s %,.0f moves/s", logicThread.isAutoplay() ? "autoplay" : "turbo", movesPerSecond));
+		rateStartNanos = now;
+		rateStartMoves = movesMade;
+	}
+	
+	private long rateStartNanos;		//Start of the interval moves per second is measured over. 0 when not measuring
+	private long rateStartMoves;		//Moves made by the logic thread at the start of the interval
+	
+	private void undoLastMove()
+	{
+		/*
+		 * Undoes the last move as if the undo button was pressed. If the undo button has not been created yet the move is undone
+		 * without the animation
+		 */
+		
+		if(undoButton != null)	undoButton.handle(null);
+		else					logicThread.submitUndo();
+	}
+	
+	private static void preloadMedia()
+	{
+		/*
+		 * Loads the tada sound on a background thread the first time a game is created. The sound is shared by every window so it 
+		 * is only loaded once
+		 */
+		
+		if(tadaClip != null || tadaClipLoading)	return;
+		tadaClipLoading = true;
+		Thread mediaThread = new Thread(()->
+		{
+			try
+			{
+				tadaClip = new Media(Game2048GUI.class.getResource("tada.wav").toURI().toString());
+			}
+			catch(Exception audioException)
+			{
+				tadaClip = null;		//The sound will be loaded again when it is played so the error is shown to the user then
+			}
+		},"2048 media loader");
+		mediaThread.setDaemon(true);
+		mediaThread.start();
+	}
+	
+	private static volatile Media tadaClip;			//The tada sound played on a new high score. Loaded once per JVM
+	private static boolean tadaClipLoading;			//True once the tada sound has started loading
+	
+	//The button graphics that have already been drawn. The key is the name of the button
+	private static final HashMap<String,Image> preparedGraphics = new HashMap<>();
+	
+	private static ImageView prepareGraphic(String graphicName, Supplier<Node[]> graphicBuilder)
+	{
+		/*
+		 * Returns an image of the shapes created by graphicBuilder. The shapes are only created and drawn the first time a graphic
+		 * is requested. Every request after that reuses the same image so the button graphics are drawn once per JVM
+		 */
+		
+		Image graphic = preparedGraphics.get(graphicName);
+		if(graphic == null)
+		{
+			//Draw the shapes on a transparent background so the rounded corners of the button are kept
+			SnapshotParameters snapshotParameters = new SnapshotParameters();
+			snapshotParameters.setFill(Color.TRANSPARENT);
+			graphic = new Group(graphicBuilder.get()).snapshot(snapshotParameters, null);
+			preparedGraphics.put(graphicName, graphic);
+		}
+		return new ImageView(graphic);
 	}
 	
 	private static Twenty48Game loadGame(Window windowToShowDialog) throws ClassNotFoundException, IOException
@@ -318,14 +743,25 @@ public class Game2048GUI
 		*/
 		
 		//Prompt the user with an open file dialog and get the file they selected
-		FileChooser openFileDialog = new FileChooser(); 
-		openFileDialog.setTitle("Open Game");														
-		openFileDialog.getExtensionFilters().add(new ExtensionFilter ("2048 Saved Game","*.dat")); 
-		File gameFile = openFileDialog.showOpenDialog(windowToShowDialog);
+		File gameFile = chooseGameFile(windowToShowDialog);
 		
 		//If the user canceled the open file dialog then return null
 		if(gameFile == null)		return null;
+		return readGame(gameFile);
+	}
+	
+	private static File chooseGameFile(Window windowToShowDialog)
+	{
+		//Shows the user an open file dialog for saved games and returns the file they selected or null if they canceled
 		
+		FileChooser openFileDialog = new FileChooser(); 
+		openFileDialog.setTitle("Open Game");														
+		openFileDialog.getExtensionFilters().add(new ExtensionFilter ("2048 Saved Game","*.dat")); 
+		return openFileDialog.showOpenDialog(windowToShowDialog);
+	}
+	
+	private static Twenty48Game readGame(File gameFile) throws ClassNotFoundException, IOException
+	{
 		//Load the saved instance state of the Twenty48Game.
 		ObjectInputStream objectStream = new ObjectInputStream(new FileInputStream(gameFile));
 		try
@@ -341,23 +777,27 @@ public class Game2048GUI
 	private void openGame()
 	{	
 		/*
-		 * 	Prompts the user for a game file to open and loads the saved game and updates the scene on the current stage. If an
-		 * error occurs the user is given a error dialog
+		 * 	Prompts the user for a game file to open and loads the saved game on the logic thread. The scene is rebuilt when the
+		 * snapshot of the loaded game is rendered. If an error occurs the user is given a error dialog
 		 */
 		
-		try
-		{
-			 this.currentGame = loadGame(this.gameStage); 			//Prompt the user for a file and open the saved game
-		}
-		catch(Exception e)
-		{
-			//Tell the user the loading of the saved game failed
-			new Alert(AlertType.ERROR,"The saved game of 2048 is missing or corrupted",ButtonType.OK); 
-			return;
-		}
+		File gameFile = chooseGameFile(this.gameStage); 			//Prompt the user for a file
+		if(gameFile == null)	return;
+		openGame(gameFile);
+	}
+	
+	private void openGame(File gameFile)
+	{
+		//Loads the saved game in the file on the logic thread. If an error occurs the user is given a error dialog
 		
-		//Update the UI
-		this.initializeGamePane();	
+		//Open the saved game. If it fails tell the user the loading of the saved game failed
+		logicThread.replaceGame(()->
+		{
+			Twenty48Game loadedGame = readGame(gameFile);
+			preloadBestMoveCache(loadedGame.TOTAL_ROWS, loadedGame.TOTAL_COLUMNS);		//The game may be of another size
+			return loadedGame;
+		}, e->Platform.runLater(()->
+				new Alert(AlertType.ERROR,"The saved game of 2048 is missing or corrupted",ButtonType.OK).show()));
 	}
 	
 	private void saveGame()
@@ -370,20 +810,265 @@ public class Game2048GUI
 		FileChooser saveFileDialog = new FileChooser(); 
 		saveFileDialog.setTitle("Save Game");														//Display a title to the user
 		saveFileDialog.getExtensionFilters().add(new ExtensionFilter("2048 Saved Game","*.dat"));	//Only accept .dat files
+		File savesDirectory = SaveIndex.defaultDirectory();
+		if(savesDirectory.isDirectory())	saveFileDialog.setInitialDirectory(savesDirectory);		//Saves there are listed by the save browser
 		File gameFile = saveFileDialog.showSaveDialog(gameStage);									//Show the save file dialog to the user
 		if(gameFile == null)	return;					//Did the user cancel picking a file? If so don't do anything									
 		
-		//Open the file selected by the user and write the state of the game to that file. If an error occurs notify the user
-		try(ObjectOutputStream objectStream = new ObjectOutputStream(new FileOutputStream(gameFile)))
+		//Open the file selected by the user and write the state of the game to that file on the logic thread. 
+		//If an error occurs notify the user
+		logicThread.submitTask(game->
+		{
+			try(ObjectOutputStream objectStream = new ObjectOutputStream(new FileOutputStream(gameFile)))
+			{
+				game.serializeToStream(objectStream);
+				logicThread.logEvent(GameEventLog.Event.SAVED, game.getScore(), game.getMoveCount(), 0);
+			} 
+			catch (Exception e)	
+			{
+				Platform.runLater(()->new Alert(AlertType.ERROR,"The game could not be saved",ButtonType.OK).show());
+			}
+		});
+	}
+	
+	private void saveReplay()
+	{
+		/*
+		 * Prompts the user for where to save the replay of the current game and writes every move of the game's history there.
+		 * ReplayExporter renders a replay to images without a window. The history is written on the logic thread so no move is
+		 * recorded half way through writing it
+		 */
+		
+		FileChooser replayFileDialog = new FileChooser();
+		replayFileDialog.setTitle("Save Replay");
+		replayFileDialog.getExtensionFilters().add(new ExtensionFilter("2048 Replay", "*" + GameHistory.REPLAY_EXTENSION));
+		File replayFile = replayFileDialog.showSaveDialog(gameStage);
+		if(replayFile == null)	return;
+		
+		logicThread.submitTask(game->
 		{
-			currentGame.serializeToStream(objectStream);
-		} 
-		catch (Exception e)	
+			try
+			{
+				logicThread.getHistory().save(replayFile);
+			}
+			catch(IOException e)
+			{
+				Platform.runLater(()->new Alert(AlertType.ERROR,"The replay could not be saved",ButtonType.OK).show());
+			}
+		});
+	}
+	
+	private void showSaveBrowser()
+	{
+		//Shows the save browser. Every window shares one browser and one index of the saves directory
+		if(saveBrowser == null)	saveBrowser = new SaveBrowser(new SaveIndex(SaveIndex.defaultDirectory()));
+		saveBrowser.showFor(this::openGame);
+	}
+	
+	private static SaveBrowser saveBrowser;		//Lists the saves in the saves directory. Created the first time it is shown
+	
+	private void showHint()
+	{
+		/*
+		 * Displays the best move for the current board. The hint comes from the tablebase of the board size if it exists and
+		 * contains the current board (TablebaseGenerator makes them for small boards). Otherwise it comes from the best move cache,
+		 * which remembers hints between sessions, and if the cache does not have the board it is searched and the answer is added to
+		 * the cache. If the board is too large to search the user is told that no hint is available.
+		 * A search can take a noticeable time on a crowded board so it runs on its own thread and the hint is shown when it is done.
+		 * The hint key is ignored while a search is running
+		 */
+		
+		if(hintSearching)	return;
+		long board = packCurrentBoard();
+		Tablebase tablebase = getHintTablebase();
+		BestMoveCache bestMoveCache = getBestMoveCache();
+		MoveDirection bestMove = null;
+		double expectedScore = Double.NaN;
+		if(board != NOT_PACKABLE && tablebase != null)
 		{
-			new Alert(AlertType.ERROR,"The game could not be saved",ButtonType.OK).show();
+			bestMove = tablebase.getBestMove(board);
+			expectedScore = tablebase.getExpectedScore(board);
+		}
+		
+		//Was the board not in a tablebase? If so look in the cache and then search for the best move
+		String hintText;
+		if(bestMove != null)
+			hintText = "Best move: " + bestMove + "\nExpected points from here with perfect play: " + Math.round(expectedScore);
+		else if(board != NOT_PACKABLE && bestMoveCache != null && (bestMove = bestMoveCache.getBestMove(board)) != null)
+			hintText = "Best move: " + bestMove + "\nFrom the best move cache: " + bestMoveCache;
+		else if(board != NOT_PACKABLE)
+		{
+			searchHint(board, getHintSearch(), bestMoveCache);
+			return;
+		}
+		else
+			hintText = "No hint is available for this board";
+		showHintAlert(hintText);
+	}
+	
+	private void searchHint(long board, ExpectimaxSearch search, BestMoveCache bestMoveCache)
+	{
+		//Searches for the best move of the board on a hint thread, adds it to the cache and shows it on the UI thread
+		
+		hintSearching = true;
+		Thread hintThread = new Thread(()->
+		{
+			String hintText = null;
+			String errorText = null;
+			try
+			{
+				double[] moveValues = search.evaluateMoves(board, search.defaultDepth(board));
+				MoveDirection bestMove = ExpectimaxSearch.bestOf(moveValues);
+				if(bestMove != null && bestMoveCache != null)	cacheBestMove(bestMoveCache, board, bestMove, moveValues[bestMove.ordinal()]);
+				hintText = bestMove == null ? "No move is possible" : "Best move: " + bestMove + "\nSearch cache: " + hintTable +
+						(bestMoveCache == null ? "" : "\nBest move cache: " + bestMoveCache);
+			}
+			catch(RuntimeException e)
+			{
+				errorText = "The hint could not be searched: " + e;
+			}
+			String finalHintText = hintText, finalErrorText = errorText;
+			Platform.runLater(()->
+			{
+				hintSearching = false;
+				if(finalErrorText != null)	showError(finalErrorText);
+				else						showHintAlert(finalHintText);
+			});
+		},"2048 hint search");
+		hintThread.setDaemon(true);
+		hintThread.start();
+	}
+	
+	private void showHintAlert(String hintText)
+	{
+		//Shows a hint in a dialog that does not block the window
+		Alert hintAlert = new Alert(AlertType.INFORMATION,hintText,ButtonType.OK);
+		hintAlert.setHeaderText(null);
+		hintAlert.setTitle("Hint");
+		hintAlert.show();
+	}
+	
+	private Tablebase getHintTablebase()
+	{
+		/*
+		 * Returns the tablebase for the size of the current game or null if it has not been generated. The tablebase is opened the first
+		 * time a hint is asked for and stays open until a game of another size is loaded
+		 */
+		
+		if(hintTablebase != null && hintTablebase.TOTAL_ROWS == currentGame.TOTAL_ROWS && hintTablebase.TOTAL_COLUMNS == currentGame.TOTAL_COLUMNS)
+			return hintTablebase;
+		
+		hintTablebase = null;
+		File tablebaseFile = Tablebase.fileFor(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS);
+		if(!tablebaseFile.exists())	return null;
+		try
+		{
+			hintTablebase = Tablebase.open(tablebaseFile);
+		}
+		catch(IOException e)
+		{
+			new Alert(AlertType.ERROR,"The tablebase " + tablebaseFile.getName() + " could not be opened",ButtonType.OK).show();
+		}
+		return hintTablebase;
+	}
+	
+	private BestMoveCache getBestMoveCache()
+	{
+		//Returns the best move cache for the size of the current game or null if it is still loading or could not be loaded
+		CompletableFuture<BestMoveCache> loading = bestMoveCaches.get(currentGame.TOTAL_ROWS + "x" + currentGame.TOTAL_COLUMNS);
+		return (loading == null) ? null : loading.getNow(null);
+	}
+	
+	private static void preloadBestMoveCache(int rows, int columns)
+	{
+		/*
+		 * Loads the best move cache of the board size on a background thread the first time a board of the size is shown. Every window
+		 * shares the cache of a size because only one writer may append to its file. A cache that can not be loaded is left out
+		 */
+		
+		if(!PackedBoard.fits(rows, columns))	return;
+		bestMoveCaches.computeIfAbsent(rows + "x" + columns, size->CompletableFuture.supplyAsync(()->
+		{
+			try
+			{
+				return BestMoveCache.open(BestMoveCache.fileFor(rows, columns), rows, columns, 
+						Integer.getInteger("twenty48.bestMoveCacheEntries", BestMoveCache.DEFAULT_MAX_ENTRIES));
+			}
+			catch(IOException e)
+			{
+				showError("The best move cache could not be loaded, hints will not be remembered: " + e.getMessage());	//Hints are still searched
+				return null;
+			}
+		}));
+	}
+	
+	private static void cacheBestMove(BestMoveCache bestMoveCache, long board, MoveDirection bestMove, double value)
+	{
+		//Adds a searched hint to the cache and writes it to the file right away. Hints are asked for rarely so the flush is cheap
+		try
+		{
+			bestMoveCache.put(board, bestMove, value);
+			bestMoveCache.flush();
+		}
+		catch(IOException e)
+		{
+			showError("The hint could not be saved to the best move cache: " + e.getMessage());	//It is still remembered for this session
 		}
 	}
 	
+	static void showError(String message)
+	{
+		//Shows an error in a dialog that does not block the window. Can be called from any thread
+		if(Platform.isFxApplicationThread())	new Alert(AlertType.ERROR,message,ButtonType.OK).show();
+		else									Platform.runLater(()->showError(message));
+	}
+	
+	private long packCurrentBoard()
+	{
+		/*
+		 * Packs the cells of the current game into a PackedBoard. Returns NOT_PACKABLE if the board has too many cells or a cell value
+		 * is too large to pack
+		 */
+		
+		if(!PackedBoard.fits(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS))	return NOT_PACKABLE;
+		try
+		{
+			return PackedBoard.fromValues(currentGame.copyValues());
+		}
+		catch(IllegalArgumentException e)
+		{
+			return NOT_PACKABLE;
+		}
+	}
+	
+	private ExpectimaxSearch getHintSearch()
+	{
+		/*
+		 * Returns a search for the size of the current game. Every window shares one off-heap transposition table so positions
+		 * searched for one hint are reused by the next. The size of the table is set with the system property twenty48.hintTableMegabytes
+		 * (64 by default). The search uses the weights WeightTuner wrote for the board size when there are some
+		 */
+		
+		if(hintTable == null)	hintTable = new TranspositionTable(Integer.getInteger("twenty48.hintTableMegabytes", 64));
+		if(hintSearch == null || hintSearchRows != currentGame.TOTAL_ROWS || hintSearchColumns != currentGame.TOTAL_COLUMNS)
+		{
+			hintSearch = new ExpectimaxSearch(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS, hintTable,
+					HeuristicWeights.forBoard(currentGame.TOTAL_ROWS, currentGame.TOTAL_COLUMNS));
+			hintSearchRows = currentGame.TOTAL_ROWS;
+			hintSearchColumns = currentGame.TOTAL_COLUMNS;
+		}
+		return hintSearch;
+	}
+	
+	private static TranspositionTable hintTable;	//Transposition table shared by the hint searches of every window
+	private ExpectimaxSearch hintSearch;			//Search used for hints when no tablebase has the board
+	private boolean hintSearching;					//True while a hint is being searched on the hint thread
+	private int hintSearchRows;						//The number of rows hintSearch was created for
+	private int hintSearchColumns;					//The number of columns hintSearch was created for
+	private static final long NOT_PACKABLE = -1;	//Returned by packCurrentBoard when the board can not be packed. Never a playable board
+	private Tablebase hintTablebase;				//The tablebase of the current board size. Null until a hint is asked for
+	private static final ConcurrentHashMap<String, CompletableFuture<BestMoveCache>> bestMoveCaches = new ConcurrentHashMap<>();	//Caches by "rowsxcolumns"
+	
 	private int loadHighScore()
 	{
 		/*
@@ -408,16 +1093,41 @@ public class Game2048GUI
 		return loadedHighScore;
 	}
 	
-	private void updateBoard()
+	private void updateBoard(BoardSnapshot newSnapshot)
 	{	/*
-			Updates the game layout. Updates the cell values, whether the undo button is available, high score, current score, and move count
-			Checks the game status to see if the game has ended or a winner has occurred
+			Updates the game layout to a new snapshot. Updates the cell values, whether the undo button is available, high score, current score, 
+			and move count. Checks the game status to see if the game has ended or a winner has occurred
+			If the snapshot is of a different game than the one displayed (a game was loaded) then the whole layout is rebuilt instead
 		*/
 		
-		//Update the cells with their corresponding values in the game logic
-		for(int column = 0; column < currentGame.TOTAL_COLUMNS; column ++)
-			for(int row = 0; row < currentGame.TOTAL_ROWS; row ++)
-				gameCells[row][column].updateValue(currentGame.getCellValue(row, column));
+		boolean differentGame = newSnapshot.getGameNumber() != currentGame.getGameNumber();
+		currentGame = newSnapshot;
+		if(differentGame)
+		{
+			this.initializeGamePane();
+			return;
+		}
+		renderSnapshot(newSnapshot);
+		
+		//Check the status of the game. The dialogs can not be shown while a frame is being rendered so check after the frame
+		Twenty48Game.GameStatus snapshotStatus = currentGame.getStatus();
+		if(snapshotStatus == Twenty48Game.GameStatus.WIN || snapshotStatus == Twenty48Game.GameStatus.LOST 
+				|| snapshotStatus == Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE || newSnapshot.isWinDeferred())
+			Platform.runLater(()->checkGameStatus(newSnapshot));
+	}
+	
+	private void renderSnapshot(BoardSnapshot snapshot)
+	{
+		//Shows the cells, scores and undo button of a snapshot of the game that is displayed. The status is not checked
+		
+		currentGame = snapshot;
+		
+		//Update the cells with their corresponding values in the game logic. A viewport only updates the cells that can be seen
+		if(boardViewport != null)	boardViewport.refresh();
+		else
+			for(int column = 0; column < currentGame.TOTAL_COLUMNS; column ++)
+				for(int row = 0; row < currentGame.TOTAL_ROWS; row ++)
+					gameCells[row][column].updateValue(currentGame.getCellValue(row, column));
 		
 		//Update the score, high score, and move count
 		displayedScore.setValue(String.valueOf(currentGame.getScore()));
@@ -428,15 +1138,22 @@ public class Game2048GUI
 		//If the undo button and disabled and undo is possible then animate the undo button into view
 		//If the undo button is enabled and undo is not possible then animate the undo button out of view
 		//Both are achieved by toggleEnabled
-		if(undoButton.isDisabled() && currentGame.isUndoPossible() || !undoButton.isDisabled() && !currentGame.isUndoPossible())  
+		if(undoButton != null && (undoButton.isDisabled() && currentGame.isUndoPossible() || !undoButton.isDisabled() && !currentGame.isUndoPossible()))  
 			undoButton.toggleEnabled();
+	}
+	
+	private void checkGameStatus(BoardSnapshot snapshot)
+	{
+		/*
+		 * Asks the user if they want to keep playing after a win and ends the game when no more moves are possible. The logic thread
+		 * does not make any moves until the user has answered
+		 */
 		
-		//Check the status of the game
-		Twenty48Game.GameStatus currentStatus = currentGame.getGameStatus();
+		Twenty48Game.GameStatus currentStatus = snapshot.getStatus();
 		
-		//Was the move made a winning move? If so ask user if they want to keep playing. Get the status of the game again
+		//Was the move made a winning move? If so ask user if they want to keep playing. Use the status of the game that was read again
 		//to make sure another move is possible.
-		if (currentStatus == Twenty48Game.GameStatus.WIN)
+		if (currentStatus == Twenty48Game.GameStatus.WIN || snapshot.isWinDeferred())
 		{
 			//Create an information dialog asking the user if they want to continue playing. Show and wait for the user to respond
 			Alert winAlert = new Alert(AlertType.INFORMATION,"Congratulations you have won!!!\nWould you like to continue playing?",
@@ -444,13 +1161,15 @@ public class Game2048GUI
 			winAlert.setHeaderText(null);
 			winAlert.showAndWait();
 			
-			//If the user does not want to play again then fire the close window event for the game window
+			//If the user does not want to play again then fire the close window event for the game window. Otherwise let moves be made again
 			if(winAlert.getResult() != ButtonType.YES)
 				gameStage.fireEvent(new WindowEvent(null, WindowEvent.WINDOW_CLOSE_REQUEST));
 			
-			//Get status again to make sure a move is still possible. If a move is not possible then it will be checked on the next if
-			//statement
-			currentStatus = currentGame.getGameStatus(); 		
+			//Use the status that was read after the win to make sure a move is still possible. If a move is not possible then it will be
+			//checked on the next if statement
+			currentStatus = snapshot.getStatusAfterWin();
+			if(currentStatus != Twenty48Game.GameStatus.LOST && currentStatus != Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE)
+				logicThread.resumeMoves();
 		}
 		
 		//Are no more moves available? If so inform the user and ask if the want to undo their last move.
@@ -460,7 +1179,6 @@ public class Game2048GUI
 			//Fire the close window event for the game window. The user will be asked there if they want to undo
 			gameStage.fireEvent(new WindowEvent(gameStage, WindowEvent.WINDOW_CLOSE_REQUEST));
 		}
-			
 	}
 	
 	private class EndGameDialog extends Dialog<Boolean>
@@ -479,11 +1197,12 @@ public class Game2048GUI
 		
 		EndGameDialog()
 		{
-			//Initializes the dialog for a new high score dialog. The background is blue with white text
+			//Initializes the dialog for a new high score dialog. The colors come from the theme (blue with white text by default)
 			
-			backDrop.setStyle("-fx-fill:blue; -fx-arc-height: 100; -fx-arc-width: 100;");
-			lblStatus.setStyle("-fx-font-size: 22; -fx-font-weight: bold; -fx-text-fill: white; -fx-alignment: center;");
-			lblNewHighScore.setStyle("-fx-font-size: 16; -fx-text-fill:white; -fx-alignment : center;"); 
+			backDrop.getStyleClass().add("end-game-backdrop");
+			lblStatus.getStyleClass().add("end-game-status");
+			lblNewHighScore.getStyleClass().add("end-game-high-score");
+			useTheme(this.getDialogPane().getStylesheets());
 			
 			//Create a VBox to hold the status and new high score
 			VBox vbControls = new VBox();
@@ -511,7 +1230,7 @@ public class Game2048GUI
 				//Play tada sound. If it is not found in the resources then notify the user
 				try
 				{
-					Media tadaClip = new Media(Game2048GUI.class.getResource("tada.wav").toURI().toString());
+					if(tadaClip == null)	tadaClip = new Media(Game2048GUI.class.getResource("tada.wav").toURI().toString());
 					MediaPlayer audioPlayer = new MediaPlayer(tadaClip);
 					audioPlayer.play();
 				}
@@ -537,7 +1256,7 @@ public class Game2048GUI
 			KeyFrame endGameFrame = new KeyFrame(Duration.seconds(5),e->
 			{
 				lblStatus.setText("Game Over!!!");
-				backDrop.setStyle("-fx-fill:blue; -fx-arc-height: 100; -fx-arc-width: 100;");
+				backDrop.getStyleClass().add("game-over");
 				lblNewHighScore.setVisible(false);
 			});
 			
@@ -629,9 +1348,9 @@ public class Game2048GUI
 		@Override
 		public void handle(MouseEvent arg0)
 		{
-			if(!currentGame.undo())							return;
+			if(!currentGame.isUndoPossible())				return;
 			this.animateClick();
-			updateBoard();
+			logicThread.submitUndo();					//The board is updated when the snapshot after the undo is published
 		}
 		
 		public void toggleEnabled()
@@ -733,27 +1452,30 @@ public class Game2048GUI
 			 * Creates the button with a white door on it
 			 */
 			
-			
-			//Create the background (white)
-			Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
-			backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
-			
-			//Create the door and place it right of center
-			Rectangle door = new Rectangle(20,30, Color.WHITE);
-			door.setX(10);
-			door.setY(5);
-			
-			//Create the door nob and place it on the door
-			Circle doorNob = new Circle(2,Color.GRAY);
-			doorNob.setCenterX(13);
-			doorNob.setCenterY(20);
+			ImageView graphic = prepareGraphic("ExitButton",()->
+			{
+				//Create the background (white)
+				Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
+				backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
+				
+				//Create the door and place it right of center
+				Rectangle door = new Rectangle(20,30, Color.WHITE);
+				door.setX(10);
+				door.setY(5);
+				
+				//Create the door nob and place it on the door
+				Circle doorNob = new Circle(2,Color.GRAY);
+				doorNob.setCenterX(13);
+				doorNob.setCenterY(20);
+				return new Node[]{backDrop,door,doorNob};
+			});
 			
 			//Install the tooltip
 			Tooltip.install(this, new Tooltip("Exit Game"));
 			
 			//When the button is clicked fire the close window event for the game window
 			this.setOnMouseClicked(e->{gameStage.fireEvent(new WindowEvent(gameStage,WindowEvent.WINDOW_CLOSE_REQUEST));});
-			this.getChildren().addAll(backDrop,door,doorNob);
+			this.getChildren().addAll(graphic);
 		}
 	}
 	
@@ -765,26 +1487,30 @@ public class Game2048GUI
 		
 		SaveButton()
 		{
-			//Create the background
-			Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
-			backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
-			
-			//Create the floppy image and place it right of center
-			FloppyRegion floppy = new FloppyRegion(Color.GRAY, Color.WHITE);
-			floppy.setTranslateX(10);
-			floppy.setTranslateY(5);
-			
-			//Create the arrow point into the floppy
-			Line arrowLine = new Line(3,20,8,20);
-			arrowLine.setStyle("-fx-stroke: blue; -fx-stroke-width: 5;");
-			Polygon arrowHead = new Polygon(8,15,15,20,8,25);
-			arrowHead.setStyle("-fx-fill: blue;");
+			ImageView graphic = prepareGraphic("SaveButton",()->
+			{
+				//Create the background
+				Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
+				backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
+				
+				//Create the floppy image and place it right of center
+				FloppyRegion floppy = new FloppyRegion(Color.GRAY, Color.WHITE);
+				floppy.setTranslateX(10);
+				floppy.setTranslateY(5);
+				
+				//Create the arrow point into the floppy
+				Line arrowLine = new Line(3,20,8,20);
+				arrowLine.setStyle("-fx-stroke: blue; -fx-stroke-width: 5;");
+				Polygon arrowHead = new Polygon(8,15,15,20,8,25);
+				arrowHead.setStyle("-fx-fill: blue;");
+				return new Node[]{backDrop,floppy,arrowLine,arrowHead};
+			});
 			
 			//Install the tooltip
 			Tooltip.install(this, new Tooltip("Save the current game"));
 			//When the button is clicked save the game
 			this.setOnMouseClicked(e->saveGame());
-			this.getChildren().addAll(backDrop,floppy,arrowLine,arrowHead);
+			this.getChildren().addAll(graphic);
 		}
 	}
 	
@@ -796,20 +1522,24 @@ public class Game2048GUI
 		
 		LoadButton()
 		{
-			//Create the background
-			Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
-			backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
-			
-			//Create a floppy image and place it right of center
-			FloppyRegion floppy = new FloppyRegion(Color.GRAY, Color.WHITE);
-			floppy.setTranslateX(10);
-			floppy.setTranslateY(5);
-			
-			//Create an arrow coming out of the floppy
-			Line arrowLine = new Line(12,20,8,20);
-			arrowLine.setStyle("-fx-stroke: blue; -fx-stroke-width: 5;");
-			Polygon arrowHead = new Polygon(8,15,1,20,8,25);
-			arrowHead.setStyle("-fx-fill: blue;");
+			ImageView graphic = prepareGraphic("LoadButton",()->
+			{
+				//Create the background
+				Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
+				backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
+				
+				//Create a floppy image and place it right of center
+				FloppyRegion floppy = new FloppyRegion(Color.GRAY, Color.WHITE);
+				floppy.setTranslateX(10);
+				floppy.setTranslateY(5);
+				
+				//Create an arrow coming out of the floppy
+				Line arrowLine = new Line(12,20,8,20);
+				arrowLine.setStyle("-fx-stroke: blue; -fx-stroke-width: 5;");
+				Polygon arrowHead = new Polygon(8,15,1,20,8,25);
+				arrowHead.setStyle("-fx-fill: blue;");
+				return new Node[]{backDrop,floppy,arrowLine,arrowHead};
+			});
 			
 			//Install the tooltip
 			Tooltip.install(this, new Tooltip("Load a saved game"));
@@ -817,7 +1547,7 @@ public class Game2048GUI
 			//When the button is pressed open a game to be loaded into the current window
 			this.setOnMouseClicked(e->openGame());
 			
-			this.getChildren().addAll(backDrop,floppy,arrowLine,arrowHead);
+			this.getChildren().addAll(graphic);
 		}
 	}
 	
@@ -828,20 +1558,24 @@ public class Game2048GUI
 		 */
 		HelpButton()
 		{
-			//Create the background
-			Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
-			backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
-			
-			//Create a question mark and center it
-			Label lblQuestionMark = new Label("?");
-			lblQuestionMark.setFont(Font.font(null, FontWeight.BOLD, 22));
-			lblQuestionMark.setTranslateX(16);
-			lblQuestionMark.setTranslateY(4);
-			lblQuestionMark.setTextFill(Color.WHITE);
+			ImageView graphic = prepareGraphic("HelpButton",()->
+			{
+				//Create the background
+				Rectangle backDrop = new Rectangle(40,40,Color.GRAY);
+				backDrop.setStyle("-fx-arc-width: 10; -fx-arc-height: 10;"); 
+				
+				//Create a question mark and center it
+				Label lblQuestionMark = new Label("?");
+				lblQuestionMark.setFont(Font.font(null, FontWeight.BOLD, 22));
+				lblQuestionMark.setTranslateX(16);
+				lblQuestionMark.setTranslateY(4);
+				lblQuestionMark.setTextFill(Color.WHITE);
+				return new Node[]{backDrop,lblQuestionMark};
+			});
 			
 			//When the button is clicked show the help dialog
 			this.setOnMouseClicked(e->showHelp());
-			this.getChildren().addAll(backDrop,lblQuestionMark);
+			this.getChildren().addAll(graphic);
 		}
 	}
 	
@@ -865,6 +1599,9 @@ public class Game2048GUI
 			//If the game board is the default value then return the default value 132
 			if(totalRows == 4 && totalColumns == 4) return 132;
 			
+			//Was the length already calculated for this board size? If so don't ask for the screen bounds again
+			if(totalRows == cachedRows && totalColumns == cachedColumns)	return cachedSideLength;
+			
 			//Calculate the max Y and X values to fit the board and all the cells on the screen
 			Rectangle2D screenBounds = Screen.getPrimary().getBounds();
 			double maxY = screenBounds.getHeight();
@@ -874,10 +1611,18 @@ public class Game2048GUI
 			maxY *= 2.5/(4 * totalRows);
 			maxX *= 2.5/(4 * totalColumns);
 			
-			//Return whichever dimension is the smallest
-			return (maxY < maxX) ? maxY : maxX;
+			//Remember and return whichever dimension is the smallest
+			cachedRows = (int)totalRows;
+			cachedColumns = (int)totalColumns;
+			cachedSideLength = (maxY < maxX) ? maxY : maxX;
+			return cachedSideLength;
 		}
 		
+		private static int cachedRows = -1;				//The number of rows of the last calculated cell side length
+		private static int cachedColumns = -1;			//The number of columns of the last calculated cell side length
+		private static double cachedSideLength;			//The last calculated cell side length
+		private static Font cachedFont;					//The font of the cell labels for the last calculated cell side length
+		
 		public static double getCellSize(int totalRows, int totalColumns)
 		{
 			//Calculates the size of the cell including the border placed around the cell 
@@ -890,11 +1635,6 @@ public class Game2048GUI
 			//Calculates the arc rounding to perform in proportion to the default value (9) of a 4x4 game 
 			return cellSideLength / 132 * 9;
 		}
-		private static double calculateFontSize(int totalRows, int totalColumns)
-		{
-			//Calculates the font size of the cell in proportion to the default value (42) of a 4x4 game 
-			return calculateCellSideLength(totalRows, totalColumns)/132 * 42;
-		}
 		public static double calculateBorderSize(int totalRows,int totalColumns)
 		{
 			//Calculates the border size in proportion to the default value (9) of a 4x4 game 
@@ -905,19 +1645,31 @@ public class Game2048GUI
 		{
 			//Initialize the cell with the value and appropriate size
 			
-			double cellLength = calculateCellSideLength(totalRows, totalColumns);	//cellLength is the number of pixels without a border (132 by default)
-			double cellBorderSize = getCellSize(totalRows, totalColumns);			//cellBorderSize is the number of pixels to surroung the cell with (9 by default)
-			String cellArcSize = String.valueOf(calculateArcSize(cellLength));		//cellArcSize is the rounding of the corners (9 by default)
+			this(initialValue, calculateCellSideLength(totalRows, totalColumns));
+		}
+		
+		public CellPane2048(int initialValue,double cellLength)
+		{
+			//Initialize the cell with the value and a cell length (without the border) that does not depend on the board size
 			
-			//Create the cell and update it's value
+			double cellBorderSize = cellLength + 2 * (cellLength / 132 * 9);		//cellBorderSize is the length of the cell with the border around it (9 by default)
+			double cellArcSize = calculateArcSize(cellLength);						//cellArcSize is the rounding of the corners (9 by default)
+			
+			//Create the cell and update it's value. The colors come from the tile style class of the pane
 			cellRectangle = new Rectangle(cellLength,cellLength);
-			cellRectangle.setStyle("-fx-arc-height: " + cellArcSize + "; -fx-arc-width: " + cellArcSize + ";");
-			cellLabel.setFont(Font.font(null, FontWeight.BOLD, calculateFontSize(totalRows, totalColumns)));
+			cellRectangle.setArcHeight(cellArcSize);
+			cellRectangle.setArcWidth(cellArcSize);
+			cellRectangle.getStyleClass().add("cell-tile");
+			cellLabel.getStyleClass().add("cell-text");
+			this.getStyleClass().add(Theme.getStyleClass(0));
+			double fontSize = cellLength / 132 * 42;
+			if(cachedFont == null || cachedFont.getSize() != fontSize)	cachedFont = Font.font(null, FontWeight.BOLD, fontSize);
+			cellLabel.setFont(cachedFont);
 			this.updateValue(initialValue);
 			
 			//Create the border of the cell that is set to the background of the gridPane
 			Rectangle cellBorder = new Rectangle(cellBorderSize,cellBorderSize);
-			cellBorder.setFill(Color.GRAY);
+			cellBorder.getStyleClass().add("cell-border");
 			
 			//Add the border, cell rectangle, and cell label to the control
 			this.getChildren().addAll(cellBorder,cellRectangle,cellLabel);
@@ -925,34 +1677,343 @@ public class Game2048GUI
 		public void updateValue(int value)
 		{
 			/*
-			 * Updates the label of the cell and it's color.
+			 * Updates the label of the cell and it's color. The colors of the tile and the text are set by swapping the one tile
+			 * style class of the pane. Nothing is changed if the value is the same so an unchanged cell is never styled again
 			 */
 			
+			if(value == shownValue)	return;
+			shownValue = value;
 			
 			if(value != 0)	cellLabel.setText(String.valueOf(value));	//If the cell is not zero then set the label to it's value.
 			else			cellLabel.setText("");						//Otherwise the cell label is nothing
 			
-			//The color of the cell text is black if the number is less than 8 otherwise it is white
-			if(value < 8)	cellLabel.setTextFill(Color.BLACK);
-			else 			cellLabel.setTextFill(Color.WHITE);
+			this.getStyleClass().set(0, Theme.getStyleClass(exponentOf(value)));
+		}
+		
+		private int shownValue = -1;			//The value the cell shows. -1 until the first value is set
+	}
+	
+	static Color getCellColor(int value)
+	{
+		/*
+		 * Returns the color of a cell with the value in the current theme. Used to draw boards outside the window such as the
+		 * thumbnails of the save browser
+		 */
+		
+		int argb = currentTheme.getTileColor(exponentOf(value));
+		return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
+	}
+	
+	static int exponentOf(int value)
+	{
+		//Returns the exponent of a cell value (0 for an empty cell, 1 for 2, 2 for 4 ...)
+		return value == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(value);
+	}
+	
+	public static void setTheme(Theme theme)
+	{
+		/*
+		 * Switches every game window and dialog to the theme. A Theme is compiled into one stylesheet and every cell has a style class
+		 * for the exponent of its value, so only the stylesheet of each scene, or of the pane of each dialog, is swapped and nothing is
+		 * rebuilt. Windows opened later use the theme too. The theme at startup is set with the system property twenty48.theme
+		 * (Classic, Dark or High Contrast)
+		 */
+		
+		String oldStylesheet = themeStylesheet(currentTheme);
+		currentTheme = theme;
+		String newStylesheet = themeStylesheet(theme);
+		for(Window window : Window.getWindows())
+		{
+			Scene scene = window.getScene();
+			if(scene == null)	continue;
+			ObservableList<String> stylesheets = scene.getRoot() instanceof DialogPane ? ((DialogPane)scene.getRoot()).getStylesheets() : scene.getStylesheets();
+			int index = oldStylesheet == null ? -1 : stylesheets.indexOf(oldStylesheet);
+			if(index >= 0 && newStylesheet != null)	stylesheets.set(index, newStylesheet);
+			else if(index >= 0)						stylesheets.remove(index);
+			else if(newStylesheet != null)			stylesheets.add(newStylesheet);
+		}
+	}
+	
+	public static Theme getTheme()
+	{
+		return currentTheme;
+	}
+	
+	private static void useTheme(ObservableList<String> stylesheets)
+	{
+		//Adds the stylesheet of the current theme to a scene or dialog
+		String stylesheet = themeStylesheet(currentTheme);
+		if(stylesheet != null)	stylesheets.add(stylesheet);
+	}
+	
+	private static String themeStylesheet(Theme theme)
+	{
+		/*
+		 * Returns the URL of the stylesheet of the theme, or of the Classic theme if it could not be written. Returns null if neither
+		 * could be written and tells the user once. Without a stylesheet the board is uncolored
+		 */
+		
+		try
+		{
+			return theme.getStylesheetUrl();
+		}
+		catch(IOException e)
+		{
+			if(theme != Theme.CLASSIC)	return themeStylesheet(Theme.CLASSIC);
+			if(!stylesheetFailureShown)
+			{
+				stylesheetFailureShown = true;
+				new Alert(AlertType.ERROR,"The colors of the board could not be written, the board is shown without them",ButtonType.OK).show();
+			}
+			return null;
+		}
+	}
+	
+	private static Theme currentTheme = Theme.forName(System.getProperty("twenty48.theme", "Classic"));	//The theme of every window
+	private static boolean stylesheetFailureShown;		//True once the user was told the stylesheets could not be written
+	
+	private static class ScaledBoard extends Region
+	{
+		/*
+		 * Holds the board at the size it was laid out at and scales it with a single Scale transform to fit the space it is given,
+		 * keeping its aspect ratio. No cell is ever rebuilt or laid out again when the window is resized.
+		 * While the scale is changing the board is cached as a bitmap and the bitmap is scaled, which keeps resizing smooth on boards
+		 * with thousands of cells. Once the scale has not changed for SETTLE_DELAY the cache is dropped so the text is drawn sharp at
+		 * the new scale. The same happens when the window moves to a screen with another DPI
+		 */
+		
+		public static final double MIN_SCALE = 0.25;		//The board is never shrunk more than this so the window has a minimum size
+		public static final Duration SETTLE_DELAY = Duration.millis(200);
+		
+		public ScaledBoard(Region board)
+		{
+			this.board = board;
+			board.getTransforms().add(boardScale);
+			this.getChildren().add(board);
+			settleTimer.setOnFinished(e->
+			{
+				board.setCache(false);				//Draw the text again at the final scale
+				board.setCacheHint(CacheHint.DEFAULT);
+			});
+		}
+		
+		public void rasterizeWhenSettled()
+		{
+			//Scales a bitmap of the board until the scale settles and then draws the board again at the new scale
+			if(!board.isCache())
+			{
+				board.setCache(true);
+				board.setCacheHint(CacheHint.SCALE);
+			}
+			settleTimer.playFromStart();
+		}
+		
+		@Override
+		protected void layoutChildren()
+		{
+			//Gives the board its reference size, then scales it to fit and centers it
+			
+			double referenceWidth = getReferenceWidth();
+			double referenceHeight = getReferenceHeight();
+			board.resize(referenceWidth, referenceHeight);
+			
+			double scale = Math.max(MIN_SCALE, Math.min(getWidth() / referenceWidth, getHeight() / referenceHeight));
+			if(scale != boardScale.getX())
+			{
+				boardScale.setX(scale);
+				boardScale.setY(scale);
+				rasterizeWhenSettled();
+			}
+			board.relocate((getWidth() - referenceWidth * scale) / 2, (getHeight() - referenceHeight * scale) / 2);
+		}
+		
+		@Override	protected double computePrefWidth(double height)	{ return getReferenceWidth(); }
+		@Override	protected double computePrefHeight(double width)	{ return getReferenceHeight(); }
+		@Override	protected double computeMinWidth(double height)		{ return getReferenceWidth() * MIN_SCALE; }
+		@Override	protected double computeMinHeight(double width)		{ return getReferenceHeight() * MIN_SCALE; }
+		@Override	protected double computeMaxWidth(double height)		{ return Double.MAX_VALUE; }
+		@Override	protected double computeMaxHeight(double width)		{ return Double.MAX_VALUE; }
+		
+		private final Region board;								//The grid or viewport that is scaled
+		private final Scale boardScale = new Scale(1, 1);		//Scales the board around its top left corner
+		private final PauseTransition settleTimer = new PauseTransition(SETTLE_DELAY);	//Restarted on every scale change
+		
+		private double getReferenceWidth()
+		{
+			//The width the board asks for within its own min and max. The board is always laid out at this width
+			return Math.max(board.minWidth(-1), Math.min(board.prefWidth(-1), board.maxWidth(-1)));
+		}
+		
+		private double getReferenceHeight()
+		{
+			return Math.max(board.minHeight(-1), Math.min(board.prefHeight(-1), board.maxHeight(-1)));
+		}
+	}
+	
+	private static class BoardViewport extends Region
+	{
+		/*
+		 * A scrollable and zoomable view of a board that is too big to show every cell at a readable size. Cells are always drawn at 
+		 * CELL_SIDE pixels times the zoom. Only a pool of cells large enough to cover the view is created. Panning inside of a cell only
+		 * moves the pool and panning past a cell rebinds the pool to the cells that are now visible, so the cost of panning and zooming
+		 * depends on the size of the view and not the size of the board. Cell values are read through CellValues when they are shown.
+		 * Scroll to pan, drag to pan, Ctrl + scroll or pinch to zoom
+		 */
+		
+		interface CellValues
+		{
+			int getCellValue(int row, int column);		//Returns the value of a cell. Row 0 is the bottom row
+		}
+		
+		public static final double MIN_READABLE_CELL_SIDE = 40;		//Boards with smaller cells than this are shown in a viewport
+		public static final double CELL_SIDE = 96;					//The length of a cell without its border at a zoom of 1
+		public static final double CELL_PITCH = CELL_SIDE + 2 * (CELL_SIDE / 132 * 9);	//The length of a cell with its border
+		public static final double MIN_ZOOM = 0.5;
+		public static final double MAX_ZOOM = 2;
+		
+		public BoardViewport(int totalRows, int totalColumns, double maxWidth, double maxHeight, CellValues cellValues)
+		{
+			//Creates a view of at most maxWidth by maxHeight pixels starting at the top left corner of the board
+			
+			this.totalRows = totalRows;
+			this.totalColumns = totalColumns;
+			this.cellValues = cellValues;
+			viewWidth = Math.min(maxWidth, totalColumns * CELL_PITCH);
+			viewHeight = Math.min(maxHeight, totalRows * CELL_PITCH);
+			
+			//The view does not resize and nothing is drawn outside of it
+			this.setMinSize(viewWidth, viewHeight);
+			this.setMaxSize(viewWidth, viewHeight);
+			this.setClip(new Rectangle(viewWidth, viewHeight));
+			this.getStyleClass().add("board");
+			
+			cellPool.getTransforms().add(zoomTransform);
+			this.getChildren().add(cellPool);
+			
+			//Scroll pans the board and Ctrl + scroll zooms around the mouse
+			this.setOnScroll(e->
+			{
+				if(e.isControlDown())	zoomAround(e.getX(), e.getY(), e.getDeltaY() > 0 ? 1.1 : 1 / 1.1);
+				else					panBy(-e.getDeltaX(), -e.getDeltaY());
+				e.consume();
+			});
+			this.setOnZoom(e->zoomAround(e.getX(), e.getY(), e.getZoomFactor()));
+			
+			//Dragging the board pans it
+			this.setOnMousePressed(e->
+			{
+				dragX = e.getX();
+				dragY = e.getY();
+			});
+			this.setOnMouseDragged(e->
+			{
+				panBy(dragX - e.getX(), dragY - e.getY());
+				dragX = e.getX();
+				dragY = e.getY();
+			});
+			
+			resizePool();
+		}
+		
+		public void refresh()
+		{
+			//Reads the values of every visible cell again
+			
+			for(int poolRow = 0; poolRow < poolRows; poolRow ++)
+				for(int poolColumn = 0; poolColumn < poolColumns; poolColumn ++)
+				{
+					CellPane2048 cell = (CellPane2048)cellPool.getChildren().get(poolRow * poolColumns + poolColumn);
+					int displayRow = firstRow + poolRow;
+					int column = firstColumn + poolColumn;
+					boolean onBoard = displayRow < totalRows && column < totalColumns;
+					cell.setVisible(onBoard);
+					
+					//The top row of the view is the last row of the game since row 0 of the game is the bottom
+					if(onBoard)	cell.updateValue(cellValues.getCellValue(totalRows - 1 - displayRow, column));
+				}
+		}
+		
+		public void panBy(double deltaX, double deltaY)
+		{
+			//Moves the view by a number of screen pixels. Positive values move toward the bottom right of the board
+			
+			offsetX += deltaX / zoom;
+			offsetY += deltaY / zoom;
+			positionPool();
+		}
+		
+		public void zoomAround(double viewX, double viewY, double factor)
+		{
+			//Zooms by the factor while keeping the point of the board under (viewX, viewY) in place
+			
+			double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+			if(newZoom == zoom)	return;
+			offsetX += viewX / zoom - viewX / newZoom;
+			offsetY += viewY / zoom - viewY / newZoom;
+			zoom = newZoom;
+			zoomTransform.setX(zoom);
+			zoomTransform.setY(zoom);
+			resizePool();
+		}
+		
+		private final int totalRows;				//Rows of the board
+		private final int totalColumns;				//Columns of the board
+		private final CellValues cellValues;		//Source of the values of the visible cells
+		private final double viewWidth;				//Width of the view in screen pixels
+		private final double viewHeight;			//Height of the view in screen pixels
+		private final Group cellPool = new Group();	//The cells that cover the view. Row major, poolColumns cells per row
+		private final Scale zoomTransform = new Scale(1, 1);
+		private int poolRows;						//Number of rows of cells in the pool
+		private int poolColumns;					//Number of columns of cells in the pool
+		private int firstRow = -1;					//The displayed row (0 = top) shown by the first row of the pool
+		private int firstColumn = -1;				//The column shown by the first column of the pool
+		private double offsetX;						//Board pixel (at a zoom of 1) shown at the left edge of the view
+		private double offsetY;						//Board pixel (at a zoom of 1) shown at the top edge of the view
+		private double zoom = 1;
+		private double dragX, dragY;				//The last mouse position of a drag
+		
+		private void resizePool()
+		{
+			//Creates or removes cells so the pool covers the view at the current zoom. Existing cells are reused
+			
+			poolColumns = Math.min(totalColumns, (int)Math.ceil(viewWidth / (CELL_PITCH * zoom)) + 1);
+			poolRows = Math.min(totalRows, (int)Math.ceil(viewHeight / (CELL_PITCH * zoom)) + 1);
+			int poolSize = poolRows * poolColumns;
+			
+			ObservableList<Node> cells = cellPool.getChildren();
+			if(cells.size() > poolSize)		cells.remove(poolSize, cells.size());
+			while(cells.size() < poolSize)	cells.add(new CellPane2048(0, CELL_SIDE));
+			
+			//Place every cell of the pool in its spot of the pool grid
+			for(int poolRow = 0; poolRow < poolRows; poolRow ++)
+				for(int poolColumn = 0; poolColumn < poolColumns; poolColumn ++)
+				{
+					Node cell = cells.get(poolRow * poolColumns + poolColumn);
+					cell.setLayoutX(poolColumn * CELL_PITCH);
+					cell.setLayoutY(poolRow * CELL_PITCH);
+				}
+			
+			firstRow = -1;			//Force the values to be read again
+			positionPool();
+		}
+		
+		private void positionPool()
+		{
+			//Keeps the view on the board and moves the pool under the view. The cell values are only read if the first visible cell changed
+			
+			offsetX = Math.max(0, Math.min(offsetX, totalColumns * CELL_PITCH - viewWidth / zoom));
+			offsetY = Math.max(0, Math.min(offsetY, totalRows * CELL_PITCH - viewHeight / zoom));
+			
+			int visibleColumn = Math.min((int)(offsetX / CELL_PITCH), totalColumns - poolColumns);
+			int visibleRow = Math.min((int)(offsetY / CELL_PITCH), totalRows - poolRows);
+			cellPool.setTranslateX((visibleColumn * CELL_PITCH - offsetX) * zoom);
+			cellPool.setTranslateY((visibleRow * CELL_PITCH - offsetY) * zoom);
 			
-			//Set cell rectangle color according to it's value. If the value is greater than 2048 then it is black. If the value is 0 then
-			//color the cell to blend into the background
-			switch(value)
+			if(visibleColumn != firstColumn || visibleRow != firstRow)
 			{
-			case 0: 		cellRectangle.setFill(Color.DARKGRAY);				break;
-			case 2:			cellRectangle.setFill(Color.rgb(238, 228, 218));	break;
-			case 4:			cellRectangle.setFill(Color.rgb(223, 201, 159)); 	break;
-			case 8:			cellRectangle.setFill(Color.rgb(242, 177, 121));   	break;
-			case 16:		cellRectangle.setFill(Color.rgb(245, 149, 99));   	break;
-			case 32:		cellRectangle.setFill(Color.rgb(246, 124, 95));    	break;
-			case 64:		cellRectangle.setFill(Color.rgb(246, 94,  59));		break;
-			case 128:		cellRectangle.setFill(Color.rgb(237, 207, 114));	break;
-			case 256:		cellRectangle.setFill(Color.rgb(237, 204, 97)); 	break;
-			case 512:		cellRectangle.setFill(Color.rgb(237, 200, 80)); 	break;
-			case 1024:		cellRectangle.setFill(Color.rgb(237, 197, 63)); 	break;
-			case 2048:		cellRectangle.setFill(Color.rgb(237, 194, 46));		break; 
-			default:		cellRectangle.setFill(Color.BLACK);
+				firstColumn = visibleColumn;
+				firstRow = visibleRow;
+				refresh();
 			}
 		}
 	}
@@ -0,0 +1,432 @@
+/*
+ * Reads the results of every game in folders of GameEventLog files and replay files and writes a report of the score percentiles, the
+ * largest cell reached, and how many moves the games lasted before they were lost, for every board size.
+ * Usage: java GameAnalytics reportFile path... (a reportFile of - writes the report to standard output)
+ * Every path is a file or a folder that is searched with its subfolders for files ending in GameEventLog.LOG_EXTENSION or
+ * GameHistory.REPLAY_EXTENSION. Each file is read once from start to end and nothing is kept of a game except what it adds to the
+ * totals of its board size: a few LogHistograms and a count of games per largest cell. So the memory used depends on the number of
+ * board sizes and worker threads, not on the number of games, and 100 million games fit in a small heap (-Xmx256m is plenty).
+ * The folders are walked on the main thread, which hands the files to one worker thread per processor through a short queue. Every
+ * worker adds to its own GameAnalytics and they are merged at the end, so the workers never wait on each other.
+ * A game in an event log is the last LOST event between two STARTED or LOADED events, since a lost game can be undone and lost again.
+ * The files of one log are read in order by one worker, because the board size of the game is
+ * in the STARTED or LOADED event that may be in an earlier file. A game in a replay is the last state of the replay, and it is counted
+ * as lost when that board has no move left.
+ */
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class GameAnalytics
+{
+	public static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+	public static final long[] CURVE_MOVES = {10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000, 200000, 500000};
+	public static final int QUEUED_FILES_PER_THREAD = 4;		//Files waiting for each worker, so the walk stays just ahead of the workers
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java GameAnalytics reportFile path...");
+			System.exit(1);
+		}
+		List<Path> paths = new ArrayList<>();
+		for(int path = 1; path < args.length; path ++)	paths.add(new File(args[path]).toPath());
+
+		long startNanos = System.nanoTime();
+		GameAnalytics analytics = analyze(paths, Runtime.getRuntime().availableProcessors());
+		if(args[0].equals("-"))
+		{
+			PrintWriter output = new PrintWriter(System.out);
+			analytics.writeReport(output);
+			output.flush();
+		}
+		else
+			try(PrintWriter output = new PrintWriter(args[0]))
+			{
+				analytics.writeReport(output);
+			}
+		System.out.printf("Read %d games from %d files in %.1f s%n", analytics.getGames(), analytics.getFilesRead(), (System.nanoTime() - startNanos) / 1e9);
+	}
+
+	public static GameAnalytics analyze(List<Path> paths, int threads) throws IOException, InterruptedException
+	{
+		/*
+		 * Reads every event log and replay under the paths with the number of worker threads and returns the merged results. A file
+		 * that can not be read is skipped and counted
+		 */
+
+		BlockingQueue<List<Path>> queue = new ArrayBlockingQueue<>(threads * QUEUED_FILES_PER_THREAD);
+		List<GameAnalytics> results = new ArrayList<>();
+		List<Thread> workers = new ArrayList<>();
+		for(int worker = 0; worker < threads; worker ++)
+		{
+			GameAnalytics workerResults = new GameAnalytics();
+			results.add(workerResults);
+			Thread thread = new Thread(()->workerResults.readQueued(queue), "2048 analytics " + worker);
+			thread.start();
+			workers.add(thread);
+		}
+
+		try
+		{
+			for(Path path : paths)	queueFiles(path, queue);
+		}
+		finally
+		{
+			for(int worker = 0; worker < threads; worker ++)	queue.put(Collections.emptyList());		//Tells a worker to stop
+			for(Thread thread : workers)	thread.join();
+		}
+
+		GameAnalytics merged = new GameAnalytics();
+		for(GameAnalytics workerResults : results)	merged.merge(workerResults);
+		return merged;
+	}
+
+	public static class BoardResults
+	{
+		//The totals of the games of one board size
+
+		public final int ROWS;
+		public final int COLUMNS;
+		public final LogHistogram SCORES = new LogHistogram();
+		public final LogHistogram MOVES = new LogHistogram();					//Moves made in every game
+		public final LogHistogram MOVES_TO_LOSS = new LogHistogram();			//Moves made in the games that were lost
+		public final long[] LARGEST_CELLS = new long[Theme.MAX_EXPONENT + 1];	//Games by the exponent of their largest cell
+
+		public BoardResults(int rows, int columns)
+		{
+			ROWS = rows;
+			COLUMNS = columns;
+		}
+
+		public void add(long score, int largestExponent, long moveCount, boolean lost)
+		{
+			SCORES.add(score);
+			MOVES.add(moveCount);
+			if(lost)	MOVES_TO_LOSS.add(moveCount);
+			LARGEST_CELLS[Math.max(0, Math.min(Theme.MAX_EXPONENT, largestExponent))] ++;
+		}
+
+		public void merge(BoardResults other)
+		{
+			SCORES.merge(other.SCORES);
+			MOVES.merge(other.MOVES);
+			MOVES_TO_LOSS.merge(other.MOVES_TO_LOSS);
+			for(int exponent = 0; exponent < LARGEST_CELLS.length; exponent ++)	LARGEST_CELLS[exponent] += other.LARGEST_CELLS[exponent];
+		}
+	}
+
+	public void addGame(int rows, int columns, long score, int largestExponent, long moveCount, boolean lost)
+	{
+		//Adds the result of one game to the totals of its board size
+		boards.computeIfAbsent((long)rows << 32 | columns, key->new BoardResults(rows, columns)).add(score, largestExponent, moveCount, lost);
+		games ++;
+	}
+
+	public void merge(GameAnalytics other)
+	{
+		//Adds the totals of the other results to these
+		for(BoardResults otherBoard : other.boards.values())
+			boards.computeIfAbsent((long)otherBoard.ROWS << 32 | otherBoard.COLUMNS, key->new BoardResults(otherBoard.ROWS, otherBoard.COLUMNS)).merge(otherBoard);
+		games += other.games;
+		filesRead += other.filesRead;
+		unreadableFiles += other.unreadableFiles;
+		gamesWithoutBoardSize += other.gamesWithoutBoardSize;
+	}
+
+	public long getGames()			{ return games; }
+	public long getFilesRead()		{ return filesRead; }
+
+	public Map<Long, BoardResults> getBoards()
+	{
+		//Returns the results of every board size by rows << 32 | columns, smallest rows first
+		return Collections.unmodifiableMap(boards);
+	}
+
+	public void readReplay(Path replayFile) throws IOException
+	{
+		//Adds the last state of a replay written by GameHistory.save as one game. Only the board being replayed is kept in memory
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(replayFile), READ_BUFFER_BYTES)))
+		{
+			if(input.readInt() != GameHistory.MAGIC || input.readInt() != GameHistory.VERSION)	throw new IOException(replayFile + " is not a 2048 replay");
+			int rows = input.readInt();
+			int columns = input.readInt();
+			int states = input.readInt();
+			if(rows < 1 || columns < 1 || states < 1)	throw new IOException(replayFile + " is not a 2048 replay");
+
+			byte[] exponents = new byte[rows * columns];
+			input.readFully(exponents);
+			int score = input.readInt();
+			int moveCount = input.readInt();
+			for(int state = 1; state < states; state ++)
+			{
+				score = input.readInt();
+				moveCount = input.readInt();
+				for(int change = input.readInt(); change > 0; change --)
+				{
+					int cellChange = input.readInt();
+					if((cellChange >>> 5) >= exponents.length)	throw new IOException(replayFile + " changes a cell the board does not have");
+					exponents[cellChange >>> 5] = (byte)(cellChange & 0x1F);
+				}
+			}
+
+			int largestExponent = 0;
+			for(byte exponent : exponents)	largestExponent = Math.max(largestExponent, exponent);
+			addGame(rows, columns, score, largestExponent, moveCount, !canMove(exponents, rows, columns));
+		}
+		filesRead ++;
+	}
+
+	public void readEventLog(List<Path> logFiles) throws IOException
+	{
+		/*
+		 * Adds the games of the files of one GameEventLog, oldest file first. A LOST event is only kept until the next event: an UNDONE
+		 * throws it away, and a STARTED or LOADED or the end of the log adds it as one game, so a game lost several times is counted
+		 * once. The board size of a game is taken from the last STARTED or LOADED event before it, and a game with no such event in the
+		 * files that are left is only counted
+		 */
+
+		byte[] records = new byte[READ_BUFFER_BYTES / GameEventLog.RECORD_BYTES * GameEventLog.RECORD_BYTES];
+		ByteBuffer buffer = ByteBuffer.wrap(records);
+		int rows = 0;
+		int columns = 0;
+		boolean lossPending = false;			//A LOST event that was not undone yet. Its result is in the three variables below
+		long lostScore = 0;
+		int lostExponent = 0;
+		long lostMoves = 0;
+		for(Path logFile : logFiles)
+		{
+			try(InputStream input = Files.newInputStream(logFile))
+			{
+				DataInputStream header = new DataInputStream(input);
+				if(header.readInt() != GameEventLog.MAGIC || header.readInt() != GameEventLog.VERSION || header.readInt() != GameEventLog.RECORD_BYTES)
+					throw new IOException(logFile + " is not a version " + GameEventLog.VERSION + " 2048 event log");
+				header.readLong();		//When the log was created
+
+				while(true)
+				{
+					int filled = input.readNBytes(records, 0, records.length);
+					int whole = filled / GameEventLog.RECORD_BYTES;			//A record the log was still writing is left out
+					buffer.clear();
+					for(int record = 0; record < whole; record ++)
+					{
+						buffer.getLong();		//Time
+						GameEventLog.Event event = GameEventLog.Event.fromOrdinal(buffer.getInt());
+						int arg0 = buffer.getInt();
+						int arg1 = buffer.getInt();
+						int arg2 = buffer.getInt();
+						if(event == GameEventLog.Event.STARTED || event == GameEventLog.Event.LOADED)
+						{
+							if(lossPending)	addLoss(rows, columns, lostScore, lostExponent, lostMoves);
+							lossPending = false;
+							rows = arg0;
+							columns = arg1;
+						}
+						else if(event == GameEventLog.Event.UNDONE)	lossPending = false;
+						else if(event == GameEventLog.Event.LOST)
+						{
+							lossPending = true;
+							lostScore = arg0;
+							lostExponent = exponentOf(arg1);
+							lostMoves = arg2;
+						}
+					}
+					if(filled < records.length)	break;
+				}
+			}
+			catch(EOFException e)
+			{
+				throw new IOException(logFile + " is not a 2048 event log", e);
+			}
+			filesRead ++;
+		}
+		if(lossPending)	addLoss(rows, columns, lostScore, lostExponent, lostMoves);
+	}
+
+	public void writeReport(PrintWriter output)
+	{
+		//Writes the results of every board size as text
+
+		output.printf("%d games from %d files%n", games, filesRead);
+		if(unreadableFiles > 0)			output.printf("%d files could not be read%n", unreadableFiles);
+		if(gamesWithoutBoardSize > 0)	output.printf("%d lost games were left out because their board size was in a log file that was deleted%n", gamesWithoutBoardSize);
+
+		for(BoardResults board : boards.values())
+		{
+			long totalGames = board.SCORES.getCount();
+			output.printf("%n%dx%d: %d games, %d lost%n", board.ROWS, board.COLUMNS, totalGames, board.MOVES_TO_LOSS.getCount());
+			output.printf("  %-14s", "");
+			for(double quantile : QUANTILES)	output.printf(" %10s", "p" + (int)Math.round(quantile * 100));
+			output.printf(" %10s %12s%n", "max", "mean");
+			writeQuantiles(output, "Score", board.SCORES);
+			writeQuantiles(output, "Moves", board.MOVES);
+			writeQuantiles(output, "Moves to loss", board.MOVES_TO_LOSS);
+
+			output.printf("  Largest cell%n");
+			for(int exponent = 0; exponent < board.LARGEST_CELLS.length; exponent ++)
+				if(board.LARGEST_CELLS[exponent] > 0)
+					output.printf("  %14d %10d %9.3f%%%n", exponent == 0 ? 0 : 1L << exponent, board.LARGEST_CELLS[exponent], 100.0 * board.LARGEST_CELLS[exponent] / totalGames);
+
+			if(board.MOVES_TO_LOSS.getCount() == 0)	continue;
+			output.printf("  Lost by move%n");
+			for(long moves : CURVE_MOVES)
+			{
+				output.printf("  %14d %9.3f%%%n", moves, 100 * board.MOVES_TO_LOSS.fractionAtOrBelow(moves));
+				if(moves >= board.MOVES_TO_LOSS.getMax())	break;
+			}
+		}
+	}
+
+	private static final int READ_BUFFER_BYTES = 1 << 16;
+
+	private final Map<Long, BoardResults> boards = new TreeMap<>();		//By rows << 32 | columns
+	private long games;
+	private long filesRead;
+	private long unreadableFiles;
+	private long gamesWithoutBoardSize;		//LOST events read before any STARTED or LOADED event of their log
+
+	private void readQueued(BlockingQueue<List<Path>> queue)
+	{
+		//Reads the files taken from the queue until it takes an empty list. A list of more than one file is the files of one event log
+		try
+		{
+			for(List<Path> files = queue.take(); !files.isEmpty(); files = queue.take())
+			{
+				try
+				{
+					if(files.get(0).toString().endsWith(GameHistory.REPLAY_EXTENSION))	readReplay(files.get(0));
+					else																readEventLog(files);
+				}
+				catch(IOException | RuntimeException e)
+				{
+					System.err.println("Skipped " + files.get(0) + ": " + e.getMessage());
+					unreadableFiles ++;
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			//Stopped before every file was read
+		}
+	}
+
+	private void addLoss(int rows, int columns, long score, int largestExponent, long moveCount)
+	{
+		//Adds a lost game of an event log, or only counts it when the log did not say the board size
+		if(rows > 0 && columns > 0)	addGame(rows, columns, score, largestExponent, moveCount, true);
+		else						gamesWithoutBoardSize ++;
+	}
+
+	private static void queueFiles(Path path, BlockingQueue<List<Path>> queue) throws IOException
+	{
+		/*
+		 * Puts every replay under the path in the queue as soon as it is found, and the files of every event log in a folder together
+		 * once the folder has been listed. The folder is walked without listing it into memory first
+		 */
+
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			//Files of the event logs of every folder being walked, the innermost folder on top. A folder's logs are queued when it is done
+			private final ArrayDeque<Map<String, List<Path>>> folderLogs = new ArrayDeque<>();
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+			{
+				folderLogs.push(new TreeMap<>());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException
+			{
+				String name = file.getFileName().toString();
+				if(name.endsWith(GameHistory.REPLAY_EXTENSION))		put(Collections.singletonList(file));
+				else if(name.endsWith(GameEventLog.LOG_EXTENSION))
+				{
+					int fileNumberStart = name.lastIndexOf('-');
+					folderLogs.peek().computeIfAbsent(file.getParent() + File.separator + name.substring(0, fileNumberStart + 1), key->new ArrayList<>()).add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException
+			{
+				//Queues the logs of the folder. The file numbers have the same width so sorting by name puts them in order
+				for(List<Path> logFiles : folderLogs.pop().values())
+				{
+					Collections.sort(logFiles);
+					put(logFiles);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e)
+			{
+				System.err.println("Skipped " + file + ": " + e.getMessage());
+				return FileVisitResult.CONTINUE;
+			}
+
+			private void put(List<Path> files) throws IOException
+			{
+				try
+				{
+					queue.put(files);
+				}
+				catch(InterruptedException e)
+				{
+					throw new IOException("Interrupted while walking " + path, e);
+				}
+			}
+		});
+	}
+
+	private static void writeQuantiles(PrintWriter output, String name, LogHistogram histogram)
+	{
+		//Writes one line of quantiles, the largest value and the mean of the histogram
+		output.printf("  %-14s", name);
+		for(double quantile : QUANTILES)	output.printf(" %10d", histogram.valueAtQuantile(quantile));
+		output.printf(" %10d %12.1f%n", histogram.getMax(), histogram.getMean());
+	}
+
+	private static int exponentOf(int value)
+	{
+		//Returns the exponent of a cell value that is a power of 2, or 0 for an empty cell
+		return value <= 0 ? 0 : 31 - Integer.numberOfLeadingZeros(value);
+	}
+
+	private static boolean canMove(byte[] exponents, int rows, int columns)
+	{
+		//Returns true if the board has an empty cell or two equal cells next to each other
+		for(int row = 0; row < rows; row ++)
+			for(int column = 0; column < columns; column ++)
+			{
+				int cell = row * columns + column;
+				if(exponents[cell] == 0)														return true;
+				if(column + 1 < columns && exponents[cell] == exponents[cell + 1])				return true;
+				if(row + 1 < rows && exponents[cell] == exponents[cell + columns])				return true;
+			}
+		return false;
+	}
+}
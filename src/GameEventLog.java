@@ -0,0 +1,280 @@
+/*
+ * A log of everything that happens to a game: moves, spawned cells, merges, undos, saves, loads, wins and losses. Every event is a fixed
+ * size record of a time and a type with three int arguments (see Event for what they are).
+ * log() is called by one thread only, the GameLogicThread of a window, and only writes three longs into a ring that was allocated when
+ * the log was created, so logging a move allocates nothing and never touches a file. A daemon thread takes the events out of the ring in
+ * batches and writes them to binary files in the log directory. A file is closed and a new one started once it reaches maxFileBytes,
+ * and only the newest maxFiles files of each log are kept.
+ * When the ring is full the FullPolicy decides what happens: DROP throws the event away and counts it (getDroppedEvents()), BLOCK waits
+ * for the writer thread to make room, so no event is lost but a slow disk slows the game down.
+ * If a file can not be written the log stops taking events and hands the IOException to the failure listener on the writer thread.
+ * Log file layout (big endian):
+ *		int magic ("2048" log), int version, int bytes per record, long epoch milliseconds when the log was created
+ *		for every event: long nanoseconds since the log was created, int event ordinal, int arg0, int arg1, int arg2
+ * The system properties read by fromSystemProperties() are twenty48.eventLog (true by default), twenty48.eventLogDirectory ("logs"),
+ * twenty48.eventLogPolicy (drop or block, drop by default), twenty48.eventLogCapacity (events in the ring), twenty48.eventLogFileBytes
+ * and twenty48.eventLogFiles.
+ */
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class GameEventLog implements Closeable
+{
+	public enum Event
+	{
+		//The ordinal is written to the log files so the order must never change. Unused arguments are 0
+		STARTED,		//A new game was shown: rows, columns, score
+		MOVED,			//direction ordinal, score gained by the move, move count after the move
+		SPAWNED,		//cell index (row * columns + column), cell value
+		MERGED,			//cell index the merged cell ended up in, value of the merged cell
+		UNDONE,			//score after the undo, move count after the undo
+		SAVED,			//score, move count
+		LOADED,			//rows, columns, score of the game that was loaded
+		WON,			//score, largest cell, move count
+		LOST;			//score, largest cell, move count
+
+		public static Event fromOrdinal(int ordinal)
+		{
+			//Returns the event with the ordinal or null if there is none
+			Event[] events = values();
+			return ordinal >= 0 && ordinal < events.length ? events[ordinal] : null;
+		}
+	}
+
+	public enum FullPolicy { DROP, BLOCK }
+
+	static final int MAGIC = 0x32303438;			//"2048"
+	static final int VERSION = 1;
+	public static final int RECORD_BYTES = 24;
+	public static final int HEADER_BYTES = 20;
+	public static final String LOG_EXTENSION = ".events";
+	public static final int DEFAULT_CAPACITY = 1 << 16;					//Events the ring holds
+	public static final long DEFAULT_MAX_FILE_BYTES = 16L << 20;
+	public static final int DEFAULT_MAX_FILES = 8;
+	public static final int BATCH_EVENTS = 4096;						//Most events written to a file at a time
+
+	public static File defaultDirectory()
+	{
+		//Returns the directory logs are written to. Set with the system property twenty48.eventLogDirectory ("logs" by default)
+		return new File(System.getProperty("twenty48.eventLogDirectory", "logs"));
+	}
+
+	public static GameEventLog fromSystemProperties(Consumer<IOException> failureListener)
+	{
+		//Creates a log set up by the system properties listed above, or returns null if twenty48.eventLog is false
+		if(!Boolean.parseBoolean(System.getProperty("twenty48.eventLog", "true")))	return null;
+		FullPolicy policy = System.getProperty("twenty48.eventLogPolicy", "drop").equalsIgnoreCase("block") ? FullPolicy.BLOCK : FullPolicy.DROP;
+		return new GameEventLog(defaultDirectory(), Integer.getInteger("twenty48.eventLogCapacity", DEFAULT_CAPACITY), policy,
+				Long.getLong("twenty48.eventLogFileBytes", DEFAULT_MAX_FILE_BYTES), Integer.getInteger("twenty48.eventLogFiles", DEFAULT_MAX_FILES),
+				failureListener);
+	}
+
+	public GameEventLog(File directory, int capacity, FullPolicy policy, long maxFileBytes, int maxFiles, Consumer<IOException> failureListener)
+	{
+		/*
+		 * Creates the ring and starts the writer thread. capacity is rounded up to a power of 2. Nothing is written to the directory
+		 * until the first batch of events, and then on the writer thread, so creating a log never waits on the disk. failureListener
+		 * may be null
+		 */
+
+		int ringEvents = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		this.directory = directory;
+		this.policy = policy;
+		this.maxFileBytes = Math.max(HEADER_BYTES + RECORD_BYTES, maxFileBytes);
+		this.maxFiles = Math.max(1, maxFiles);
+		this.failureListener = failureListener;
+		ring = new long[ringEvents * 3];
+		mask = ringEvents - 1;
+		startMillis = System.currentTimeMillis();
+		startNanos = System.nanoTime();
+		filePrefix = "game-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(startMillis)) + "-" + ProcessHandle.current().pid()
+				+ "-" + LOG_NUMBER.incrementAndGet() + "-";
+		writerThread = new Thread(this::writeEvents, "2048 event log");
+		writerThread.setDaemon(true);		//close() writes what is left, a window that is never closed does not keep the JVM alive
+		writerThread.start();
+	}
+
+	public boolean log(Event event, int arg0, int arg1, int arg2)
+	{
+		/*
+		 * Puts an event in the ring. Must only be called by one thread. Returns false if the event was dropped because the ring was
+		 * full with the DROP policy, or because the log was closed. Allocates nothing
+		 */
+
+		if(closed)	return false;
+		long position = producerPosition;
+		if(position - cachedTaken >= ring.length / 3)
+		{
+			cachedTaken = taken.get();
+			while(position - cachedTaken >= ring.length / 3)
+			{
+				if(policy == FullPolicy.DROP || closed)
+				{
+					dropped.lazySet(dropped.get() + 1);		//Only this thread adds to it
+					return false;
+				}
+				LockSupport.unpark(writerThread);
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				cachedTaken = taken.get();
+			}
+		}
+
+		int slot = (int)(position & mask) * 3;
+		ring[slot] = System.nanoTime() - startNanos;
+		ring[slot + 1] = (long)event.ordinal() << 32 | (arg0 & 0xFFFFFFFFL);
+		ring[slot + 2] = (long)arg1 << 32 | (arg2 & 0xFFFFFFFFL);
+		producerPosition = position + 1;
+		published.lazySet(position + 1);			//The writes to the slot are seen before the new position
+		return true;
+	}
+
+	public long getDroppedEvents()
+	{
+		//Returns the number of events that were thrown away because the ring was full
+		return dropped.get();
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	@Override
+	public void close()
+	{
+		//Stops taking events, waits for the writer thread to write the ones in the ring and closes the file
+		closed = true;
+		LockSupport.unpark(writerThread);
+		try
+		{
+			writerThread.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final AtomicInteger LOG_NUMBER = new AtomicInteger();	//Tells apart the logs of the windows of one process
+	private static final long IDLE_PARK_NANOS = 2_000_000;				//The writer waits this long when the ring is empty
+	private static final long BLOCK_PARK_NANOS = 50_000;				//With BLOCK, how long log() waits for room before looking again
+
+	private final File directory;
+	private final FullPolicy policy;
+	private final long maxFileBytes;
+	private final int maxFiles;
+	private final long[] ring;							//Time, event and arg0, arg1 and arg2 of every event
+	private final int mask;								//Events in the ring - 1
+	private final long startMillis;
+	private final long startNanos;
+	private final String filePrefix;					//Start of the name of every file of this log
+	private final Consumer<IOException> failureListener;	//Told on the writer thread when a file can not be written. May be null
+	private final Thread writerThread;
+	private final AtomicLong published = new AtomicLong();	//Events put in the ring. Only changed by the logging thread
+	private final AtomicLong taken = new AtomicLong();		//Events taken out of the ring. Only changed by the writer thread
+	private final AtomicLong dropped = new AtomicLong();
+	private long producerPosition;						//The logging thread's own copy of published
+	private long cachedTaken;							//The last value of taken the logging thread read
+	private volatile boolean closed;
+
+	//Only used by the writer thread
+	private final ArrayDeque<File> files = new ArrayDeque<>();		//The files of this log that were not deleted, oldest first
+	private FileChannel channel;
+	private long fileBytes;
+	private int fileNumber;
+
+	private void writeEvents()
+	{
+		//Writes the events in the ring to the files in batches until the log is closed and every event was written
+		ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_EVENTS * RECORD_BYTES);
+		long position = 0;
+		try
+		{
+			while(true)
+			{
+				boolean finishing = closed;				//Read before published so nothing logged before close() is missed
+				long available = published.get() - position;
+				if(available == 0)
+				{
+					if(finishing)	break;
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+					continue;
+				}
+
+				int events = (int)Math.min(available, BATCH_EVENTS);
+				batch.clear();
+				for(int event = 0; event < events; event ++)
+				{
+					int slot = (int)((position + event) & mask) * 3;
+					batch.putLong(ring[slot]).putLong(ring[slot + 1]).putLong(ring[slot + 2]);
+				}
+				position += events;
+				taken.lazySet(position);				//The slots were copied so the logging thread can use them again
+				batch.flip();
+				writeBatch(batch);
+			}
+		}
+		catch(IOException e)
+		{
+			closed = true;								//Stop taking events nobody will write
+			taken.set(Long.MAX_VALUE / 2);				//Free a logging thread that is blocked on a full ring
+			reportFailure(e);
+		}
+		finally
+		{
+			closeFile();
+		}
+	}
+
+	private void writeBatch(ByteBuffer batch) throws IOException
+	{
+		//Writes a batch of whole records, starting a new file first when the current one is full
+		if(channel == null || fileBytes + batch.remaining() > maxFileBytes)	startFile();
+		while(batch.hasRemaining())	fileBytes += channel.write(batch);
+	}
+
+	private void startFile() throws IOException
+	{
+		//Closes the current file, starts the next one with a header and deletes the oldest files once there are more than maxFiles
+		closeFile();
+		directory.mkdirs();
+		File file = new File(directory, filePrefix + String.format("%05d", fileNumber ++) + LOG_EXTENSION);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putLong(startMillis);
+		header.flip();
+		while(header.hasRemaining())	channel.write(header);
+		fileBytes = HEADER_BYTES;
+		files.addLast(file);
+		while(files.size() > maxFiles)	files.removeFirst().delete();
+	}
+
+	private void closeFile()
+	{
+		if(channel == null)	return;
+		try
+		{
+			channel.close();
+		}
+		catch(IOException e)
+		{
+			reportFailure(e);
+		}
+		channel = null;
+	}
+
+	private void reportFailure(IOException e)
+	{
+		if(failureListener != null)	failureListener.accept(e);
+	}
+}
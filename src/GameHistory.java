@@ -0,0 +1,244 @@
+/*
+ * Every state a game has been in since it was started or loaded, kept so the window can show any earlier move. State 0 is the game as
+ * it was loaded and state n is the game after the nth change that was kept.
+ * Each state is stored as the cells that changed since the state before it, plus the score and move count. Every CHECKPOINT_INTERVAL
+ * states the whole board is stored as well. Seeking to a state copies the checkpoint at or before it and replays the changes after
+ * the checkpoint, so a seek never replays more than CHECKPOINT_INTERVAL - 1 states no matter how long the game is.
+ * A changed cell is one int: the cell index shifted left 5 bits with the exponent of the new value in the low 5 bits.
+ * Cell index is row * columns + column and row 0 is the bottom row like a Twenty48Game.
+ * The history is written by the GameLogicThread and read by the UI thread so every public method is synchronized. A seek only holds
+ * the lock for the replay of at most CHECKPOINT_INTERVAL states.
+ * A history can be saved to a replay file and loaded again, for example by ReplayExporter. Replay file layout (big endian):
+ *		int magic ("2048"), int version, int rows, int columns, int number of states
+ *		state 0: byte exponent of every cell, int score, int move count
+ *		every later state: int score, int move count, int number of changed cells, int every changed cell
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import twentyFortyEight.Twenty48Game;
+
+public class GameHistory
+{
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+	public static final String REPLAY_EXTENSION = ".replay";
+
+	public final int TOTAL_ROWS;
+	public final int TOTAL_COLUMNS;
+	public final int CHECKPOINT_INTERVAL;		//A whole board is stored every CHECKPOINT_INTERVAL states
+
+	public GameHistory(Twenty48Game game, int checkpointInterval)
+	{
+		//Creates a history whose first state is the game as it is now
+		this(game.TOTAL_ROWS, game.TOTAL_COLUMNS, checkpointInterval);
+		readExponents(game, lastState);
+		checkpoints.add(lastState.clone());
+		scores[0] = game.getScore();
+		moveCounts[0] = game.getMoveCount();
+		size = 1;
+	}
+
+	public static GameHistory load(File replayFile, int checkpointInterval) throws IOException
+	{
+		//Reads a history written by save(). Throws an IOException if the file is not a replay or is cut short
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(replayFile.toPath()))))
+		{
+			if(input.readInt() != MAGIC || input.readInt() != VERSION)
+				throw new IOException(replayFile + " is not a version " + VERSION + " 2048 replay");
+			int rows = input.readInt();
+			int columns = input.readInt();
+			int states = input.readInt();
+			if(rows < 1 || columns < 1 || states < 1)	throw new IOException(replayFile + " is not a 2048 replay");
+
+			GameHistory history = new GameHistory(rows, columns, checkpointInterval);
+			input.readFully(history.lastState);
+			history.checkpoints.add(history.lastState.clone());
+			history.scores[0] = input.readInt();
+			history.moveCounts[0] = input.readInt();
+			history.size = 1;
+			for(int state = 1; state < states; state ++)
+			{
+				int score = input.readInt();
+				int moveCount = input.readInt();
+				int changesStart = history.changeCount;
+				for(int change = input.readInt(); change > 0; change --)
+				{
+					int cellChange = input.readInt();
+					if((cellChange >>> 5) >= history.lastState.length)	throw new IOException(replayFile + " changes a cell the board does not have");
+					history.lastState[cellChange >>> 5] = (byte)(cellChange & 0x1F);
+					history.addChange(cellChange);
+				}
+				history.addState(changesStart, score, moveCount);
+			}
+			return history;
+		}
+	}
+
+	public synchronized void save(File replayFile) throws IOException
+	{
+		//Writes every state to a replay file that load() reads
+
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(replayFile.toPath()))))
+		{
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(TOTAL_ROWS);
+			output.writeInt(TOTAL_COLUMNS);
+			output.writeInt(size);
+			output.write(checkpoints.get(0));
+			output.writeInt(scores[0]);
+			output.writeInt(moveCounts[0]);
+			for(int state = 1; state < size; state ++)
+			{
+				int changesEnd = (state + 1 < size) ? changeStarts[state + 1] : changeCount;
+				output.writeInt(scores[state]);
+				output.writeInt(moveCounts[state]);
+				output.writeInt(changesEnd - changeStarts[state]);
+				for(int change = changeStarts[state]; change < changesEnd; change ++)	output.writeInt(changes[change]);
+			}
+		}
+	}
+
+	public synchronized int size()
+	{
+		//Returns the number of states. The newest state is size() - 1
+		return size;
+	}
+
+	public synchronized void record(Twenty48Game game)
+	{
+		//Adds the game as it is now as the newest state. Nothing is added if the game is the same as the newest state
+
+		int changesStart = changeCount;
+		for(int row = 0; row < TOTAL_ROWS; row ++)
+			for(int column = 0; column < TOTAL_COLUMNS; column ++)
+			{
+				int cell = row * TOTAL_COLUMNS + column;
+				byte exponent = exponentOf(game.getCellValue(row, column));
+				if(exponent == lastState[cell])	continue;
+				lastState[cell] = exponent;
+				addChange(cell << 5 | exponent);
+			}
+		if(changeCount == changesStart && game.getScore() == scores[size - 1] && game.getMoveCount() == moveCounts[size - 1])	return;
+		addState(changesStart, game.getScore(), game.getMoveCount());
+	}
+
+	public synchronized void recordUndo(Twenty48Game game)
+	{
+		/*
+		 * Drops the newest state after the game undid its last move and then records the game. The game is normally the same as the
+		 * state before the dropped one so nothing new is recorded
+		 */
+
+		if(size > 1)
+		{
+			size --;
+			changeCount = changeStarts[size];
+			if(checkpoints.size() > (size - 1) / CHECKPOINT_INTERVAL + 1)	checkpoints.remove(checkpoints.size() - 1);
+			seekExponents(size - 1, lastState);
+		}
+		record(game);
+	}
+
+	public synchronized void seek(int state, int[] valuesOut)
+	{
+		/*
+		 * Writes the cell values of the state into valuesOut, valuesOut[row * TOTAL_COLUMNS + column] being the value of a cell.
+		 * Throws an IndexOutOfBoundsException if the state does not exist
+		 */
+
+		if(state < 0 || state >= size)	throw new IndexOutOfBoundsException("State " + state + " of " + size);
+		byte[] exponents = seekBuffer;
+		seekExponents(state, exponents);
+		for(int cell = 0; cell < exponents.length; cell ++)
+			valuesOut[cell] = exponents[cell] == 0 ? 0 : 1 << exponents[cell];
+	}
+
+	public synchronized int getScore(int state)			{ return scores[state]; }
+	public synchronized int getMoveCount(int state)		{ return moveCounts[state]; }
+
+	public synchronized long getMemoryBytes()
+	{
+		//Returns the approximate number of bytes used by the history
+		long checkpointBytes = (long)checkpoints.size() * (lastState.length + ARRAY_HEADER_BYTES);
+		return checkpointBytes + 4L * (changes.length + scores.length + moveCounts.length + changeStarts.length) + 2L * lastState.length;
+	}
+
+	private static final int ARRAY_HEADER_BYTES = 16;
+	static final int MAGIC = 0x32303438;			//"2048"
+	static final int VERSION = 1;
+
+	private final List<byte[]> checkpoints = new ArrayList<>();	//The exponents of every cell of state i * CHECKPOINT_INTERVAL
+	private final byte[] lastState;				//The exponents of every cell of the newest state
+	private final byte[] seekBuffer;			//The exponents of the state being seeked to. Reused so seeking does not allocate
+	private int[] changes = new int[1024];		//The changed cells of every state in order
+	private int changeCount;					//The number of ints of changes that are used
+	private int[] changeStarts = new int[256];	//The index in changes of the first changed cell of each state
+	private int[] scores = new int[256];		//The score of each state
+	private int[] moveCounts = new int[256];	//The move count of each state
+	private int size;							//The number of states
+
+	private GameHistory(int rows, int columns, int checkpointInterval)
+	{
+		//Creates a history without any state. The constructors add state 0
+		TOTAL_ROWS = rows;
+		TOTAL_COLUMNS = columns;
+		CHECKPOINT_INTERVAL = Math.max(1, checkpointInterval);
+		lastState = new byte[TOTAL_ROWS * TOTAL_COLUMNS];
+		seekBuffer = new byte[lastState.length];
+	}
+
+	private void addChange(int change)
+	{
+		if(changeCount == changes.length)	changes = Arrays.copyOf(changes, changes.length * 2);
+		changes[changeCount ++] = change;
+	}
+
+	private void addState(int changesStart, int score, int moveCount)
+	{
+		//Adds lastState as the newest state. Its changed cells start at changesStart in changes
+		if(size == scores.length)
+		{
+			scores = Arrays.copyOf(scores, size * 2);
+			moveCounts = Arrays.copyOf(moveCounts, size * 2);
+			changeStarts = Arrays.copyOf(changeStarts, size * 2);
+		}
+		changeStarts[size] = changesStart;
+		scores[size] = score;
+		moveCounts[size] = moveCount;
+		if(size % CHECKPOINT_INTERVAL == 0)	checkpoints.add(lastState.clone());
+		size ++;
+	}
+
+	private void seekExponents(int state, byte[] exponentsOut)
+	{
+		//Copies the checkpoint at or before the state and replays the changes of the states after it
+
+		int checkpointState = state / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+		System.arraycopy(checkpoints.get(state / CHECKPOINT_INTERVAL), 0, exponentsOut, 0, exponentsOut.length);
+		if(state == checkpointState)	return;
+		int changesEnd = (state + 1 < size) ? changeStarts[state + 1] : changeCount;
+		for(int change = changeStarts[checkpointState + 1]; change < changesEnd; change ++)
+			exponentsOut[changes[change] >>> 5] = (byte)(changes[change] & 0x1F);
+	}
+
+	private void readExponents(Twenty48Game game, byte[] exponentsOut)
+	{
+		for(int row = 0; row < TOTAL_ROWS; row ++)
+			for(int column = 0; column < TOTAL_COLUMNS; column ++)
+				exponentsOut[row * TOTAL_COLUMNS + column] = exponentOf(game.getCellValue(row, column));
+	}
+
+	static byte exponentOf(int value)
+	{
+		return (byte)(value == 0 ? 0 : Integer.numberOfTrailingZeros(value));
+	}
+}
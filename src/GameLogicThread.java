@@ -0,0 +1,447 @@
+/*
+ * A thread that owns a Twenty48Game. Every change to the game (moves, undo, saving, loading another game) is submitted as a command
+ * and run on this thread in the order it was submitted, so a slow move or a slow file never freezes the window.
+ * After a command changes the game an immutable BoardSnapshot is published into a single slot. Publishing replaces whatever snapshot
+ * is in the slot, so the UI thread only ever renders the newest state no matter how many moves were made since it last looked.
+ * When a move wins or ends the game the thread stops making moves until the user has answered the window (resumeMoves() or an undo),
+ * the same as the window used to block on its dialogs.
+ * In turbo mode only every Nth move is published, a win does not stop the run and is reported once the run pauses (no commands are
+ * waiting and autoplay is off), and a loss is always published right away. Autoplay makes moves whenever no command is waiting.
+ * Every move and undo is recorded in a GameHistory, published or not, so the window can show any earlier state of the game.
+ * This thread is also the only thread that writes to the GameEventLog of the window. Each move is logged with the cells it merged and
+ * the cell that was spawned after it, found by moving the board from before the move with a RowCompactor, which reports the merges,
+ * and comparing it with the board after the move. The boards are kept as exponents in arrays that are only reallocated when a game of
+ * another size is loaded.
+ * submitMoves() makes a whole batch of moves as one command for bots. The batch stops at the first win or loss, publishes one snapshot
+ * at the end and completes a future with what every move did, including the cell spawned after it, found the same way as for the log.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import twentyFortyEight.Twenty48Game;
+
+public class GameLogicThread extends Thread
+{
+	public GameLogicThread(Twenty48Game game, Consumer<String> errorListener)
+	{
+		/*
+		 * Creates the thread for the game. The first snapshot is published right away so it can be taken before the thread is started.
+		 * errorListener is given a message for the user when a command fails or the event log can not be written, on the thread that
+		 * found the error
+		 */
+
+		super("2048 game logic");
+		setDaemon(true);					//Never keep the application alive once every window is closed
+		this.game = game;
+		this.errorListener = errorListener;
+		history = createHistory(game);
+		eventLog = GameEventLog.fromSystemProperties(e->errorListener.accept("The event log could not be written: " + e.getMessage()));
+		readStatus();
+		publish();
+		logGameShown(GameEventLog.Event.STARTED);
+	}
+
+	public void submitMove(MoveDirection direction)
+	{
+		//Makes a move. Ignored while the game is waiting for the user to answer a win or a loss
+		commands.add(()->makeMove(direction));
+	}
+
+	public void submitUndo()
+	{
+		//Undoes the last move. An undo also answers a loss so moves are made again
+		commands.add(()->
+		{
+			waitingForUser = false;
+			if(game.undo())
+			{
+				history.recordUndo(game);
+				if(eventLog != null)
+				{
+					eventLog.log(GameEventLog.Event.UNDONE, game.getScore(), game.getMoveCount(), 0);
+					readExponents(exponentsBefore);
+				}
+				readStatus();
+				publish();
+			}
+		});
+	}
+
+	public CompletableFuture<List<MoveResult>> submitMoves(List<MoveDirection> moves)
+	{
+		/*
+		 * Makes the moves one after another as a single command and publishes one snapshot after the last one, whether or not turbo mode
+		 * is on. Stops after the first move that wins or ends the game. The future is completed on this thread with the result of every
+		 * move that was tried, in order. No move is tried while the game is waiting for the user to answer a win or a loss
+		 */
+
+		List<MoveDirection> batch = new ArrayList<>(moves);		//The caller may reuse its list
+		CompletableFuture<List<MoveResult>> results = new CompletableFuture<>();
+		commands.add(()->
+		{
+			try
+			{
+				results.complete(makeMoves(batch));
+			}
+			catch(RuntimeException e)
+			{
+				results.completeExceptionally(e);
+				throw e;
+			}
+		});
+		return results;
+	}
+
+	public void resumeMoves()
+	{
+		//Lets moves be made again after the user chose to keep playing
+		commands.add(()->waitingForUser = false);
+	}
+
+	public void submitTask(Consumer<Twenty48Game> task)
+	{
+		//Runs a task that reads the game, such as saving it, on this thread. The task must not change the game
+		commands.add(()->task.accept(game));
+	}
+
+	public void replaceGame(Callable<Twenty48Game> gameLoader, Consumer<Exception> errorHandler)
+	{
+		/*
+		 * Loads a different game on this thread and publishes it with a new game number. If the loader returns null nothing changes.
+		 * If the loader throws, errorHandler is called on this thread with the exception
+		 */
+
+		commands.add(()->
+		{
+			try
+			{
+				Twenty48Game loadedGame = gameLoader.call();
+				if(loadedGame == null)	return;
+				game = loadedGame;
+				history = createHistory(loadedGame);
+				gameNumber ++;
+				waitingForUser = false;
+				winDeferred = false;
+				readStatus();
+				publish();
+				logGameShown(GameEventLog.Event.LOADED);
+			}
+			catch(Exception e)
+			{
+				errorHandler.accept(e);
+			}
+		});
+	}
+
+	public void logEvent(GameEventLog.Event event, int arg0, int arg1, int arg2)
+	{
+		//Logs an event of a task, such as a save. Must only be called on this thread, for example from a task given to submitTask
+		if(eventLog != null)	eventLog.log(event, arg0, arg1, arg2);
+	}
+
+	public void setTurboMode(boolean enabled, int renderEveryNth)
+	{
+		/*
+		 * Turns turbo mode on or off. In turbo mode only every renderEveryNth move is published. Turning turbo mode off publishes the
+		 * current state and reports a win that was deferred
+		 */
+
+		commands.add(()->
+		{
+			turbo = enabled;
+			this.renderEveryNth = Math.max(1, renderEveryNth);
+		});
+	}
+
+	public void setAutoplay(boolean enabled)
+	{
+		//Turns autoplay on or off. Autoplay stops by itself when the game waits for the user
+		commands.add(()->autoplay = enabled);
+	}
+
+	public boolean isTurbo()			{ return turbo; }
+	public boolean isAutoplay()			{ return autoplay; }
+
+	public long getMovesMade()
+	{
+		//Returns the number of moves made by this thread since it was created. Used to measure moves per second
+		return movesMade;
+	}
+
+	public GameHistory getHistory()
+	{
+		//Returns the history of the current game. A new history is started when another game is loaded
+		return history;
+	}
+
+	public BoardSnapshot takeSnapshot()
+	{
+		//Returns the newest snapshot that has not been taken yet and empties the slot. Returns null if nothing changed since the last take
+		return pendingSnapshot.getAndSet(null);
+	}
+
+	public BoardSnapshot getLatestSnapshot()
+	{
+		//Returns the newest snapshot whether or not it was taken
+		return latestSnapshot;
+	}
+
+	public void shutdown()
+	{
+		//Stops the thread. Commands that have not run yet are dropped
+		running = false;
+		this.interrupt();
+	}
+
+	@Override
+	public void run()
+	{
+		//Runs the submitted commands one at a time until shutdown() is called. Autoplay moves are made when no command is waiting
+		try
+		{
+			while(running)
+			{
+				try
+				{
+					Runnable command = autoplay ? commands.poll() : commands.take();
+					if(command != null)	command.run();
+					else				makeAutoplayMove();
+
+					//Has the run paused? If so publish the moves that were not published and report a deferred win
+					if(commands.isEmpty() && !autoplay && (unpublishedMoves || winDeferred))	publish();
+				}
+				catch(InterruptedException e)
+				{
+					return;
+				}
+				catch(RuntimeException e)
+				{
+					errorListener.accept("The game could not carry out a command: " + e);		//A bad command must not stop the game
+				}
+			}
+		}
+		finally
+		{
+			if(eventLog != null)	eventLog.close();		//Closed by the thread that logs so no event is logged after it
+		}
+	}
+
+	private static final MoveDirection[] AUTOPLAY_ORDER = {MoveDirection.DOWN, MoveDirection.LEFT, MoveDirection.RIGHT, MoveDirection.UP};
+
+	private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
+	private final AtomicReference<BoardSnapshot> pendingSnapshot = new AtomicReference<>();	//The single slot handed to the UI thread
+	private volatile BoardSnapshot latestSnapshot;		//The last snapshot that was published
+	private volatile GameHistory history;				//Every state of the current game. Only changed by this thread
+	private volatile boolean running = true;
+	private volatile boolean turbo;						//True when only every Nth move is published
+	private volatile boolean autoplay;					//True when moves are made whenever no command is waiting
+	private volatile long movesMade;					//Number of successful moves made
+	private Twenty48Game game;							//Only read or changed by this thread once it is started
+	private Twenty48Game.GameStatus status;				//Status of the game after the last change
+	private Twenty48Game.GameStatus statusAfterWin;		//Status read again after a win
+	private int renderEveryNth = 1;						//In turbo mode a snapshot is published every renderEveryNth moves
+	private int movesSincePublish;						//Moves made since the last snapshot
+	private boolean unpublishedMoves;					//True when a move was made that has not been published
+	private boolean winDeferred;						//True when a win happened in turbo mode that the user has not been asked about
+	private long gameNumber;							//Goes up every time a different game is loaded
+	private long sequenceNumber;						//Goes up with every snapshot
+	private boolean waitingForUser;						//True after a win or a loss until the user answers
+	private final GameEventLog eventLog;				//Null when logging is turned off
+	private final Consumer<String> errorListener;		//Told about failed commands and event log errors
+	private final RowCompactor compactor = RowCompactor.getInstance();	//Moves the board from before a move to find its merges and spawn
+	private final RowCompactor.MergeListener mergeLogger = this::logMerge;	//Made once so logging a move allocates nothing
+	private byte[] exponentsBefore;						//Cell exponents before the next move. Always kept when there is an event log
+	private byte[] exponentsAfter;						//Cell exponents after the last move
+	private byte[] exponentsMoved;						//The board before the move shifted and merged, without the spawned cell
+	private int largestValue;							//Largest cell value after the last move
+
+	private boolean makeMove(MoveDirection direction)
+	{
+		/*
+		 * Makes a move and publishes the result. In turbo mode the result is only published every renderEveryNth move or when the game
+		 * is over, and a win is deferred instead of stopping the run. Returns false if the move was not made
+		 */
+
+		if(waitingForUser)	return false;
+		int scoreBefore = game.getScore();
+		if(!applyMove(direction))	return false;
+		history.record(game);
+		movesMade ++;
+		readStatus();
+		if(eventLog != null)	followMove(direction, scoreBefore);
+
+		boolean gameOver = statusAfterWin == Twenty48Game.GameStatus.LOST || statusAfterWin == Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE;
+		if(turbo && status == Twenty48Game.GameStatus.WIN && !gameOver)
+		{
+			winDeferred = true;
+			status = statusAfterWin;
+		}
+
+		if(!turbo || gameOver || ++ movesSincePublish >= renderEveryNth)	publish();
+		else																unpublishedMoves = true;
+		return true;
+	}
+
+	private List<MoveResult> makeMoves(List<MoveDirection> moves)
+	{
+		//Makes a batch of moves until one wins or ends the game, publishes the game once and returns the result of every move tried
+
+		List<MoveResult> results = new ArrayList<>(moves.size());
+		if(waitingForUser)	return results;
+		if(eventLog == null)	readBoard();			//Without a log the board is not followed between batches
+		for(MoveDirection direction : moves)
+		{
+			int scoreBefore = game.getScore();
+			if(!applyMove(direction))
+			{
+				results.add(new MoveResult(direction, false, 0, -1, -1, 0, status));
+				continue;
+			}
+			history.record(game);
+			movesMade ++;
+			readStatus();
+			int spawnedCell = followMove(direction, scoreBefore);
+			int columns = game.TOTAL_COLUMNS;
+			results.add(spawnedCell < 0 ? new MoveResult(direction, true, game.getScore() - scoreBefore, -1, -1, 0, status)
+					: new MoveResult(direction, true, game.getScore() - scoreBefore, spawnedCell / columns, spawnedCell % columns, 1 << exponentsBefore[spawnedCell], status));
+			if(status == Twenty48Game.GameStatus.WIN || statusAfterWin == Twenty48Game.GameStatus.LOST
+					|| statusAfterWin == Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE)	break;
+		}
+		publish();
+		return results;
+	}
+
+	private void makeAutoplayMove()
+	{
+		//Makes the first move that changes the board in the order down, left, right, up. Keeps the largest cells in a bottom corner
+		for(MoveDirection direction : AUTOPLAY_ORDER)
+			if(makeMove(direction))	return;
+		autoplay = false;			//No move was possible so stop instead of spinning
+	}
+
+	private boolean applyMove(MoveDirection direction)
+	{
+		//Makes the move on the game. Returns false if the move was not possible
+		switch(direction)
+		{
+		case LEFT:		return game.moveLeft();
+		case RIGHT:		return game.moveRight();
+		case UP:		return game.moveUp();
+		default:		return game.moveDown();
+		}
+	}
+
+	private int followMove(MoveDirection direction, int scoreBefore)
+	{
+		/*
+		 * Finds the cells merged by a move and the cell spawned after it by moving the board from before the move, and returns the index
+		 * of the spawned cell or -1 if nothing was spawned. If there is an event log the move, its merges, the spawned cell and a win or
+		 * a loss the move ended in are logged in that order. Afterwards exponentsBefore holds the board after the move. Allocates nothing
+		 */
+
+		int rows = game.TOTAL_ROWS;
+		int columns = game.TOTAL_COLUMNS;
+		if(eventLog != null)	eventLog.log(GameEventLog.Event.MOVED, direction.ordinal(), game.getScore() - scoreBefore, game.getMoveCount());
+
+		compactor.move(exponentsBefore, rows, columns, direction, exponentsMoved, eventLog == null ? null : mergeLogger);
+
+		//The spawned cell is the one that is empty after shifting but not on the board
+		readExponents(exponentsAfter);
+		int spawnedCell = -1;
+		for(int cell = 0; cell < exponentsAfter.length; cell ++)
+			if(exponentsMoved[cell] == 0 && exponentsAfter[cell] != 0)
+			{
+				if(spawnedCell < 0)		spawnedCell = cell;
+				if(eventLog != null)	eventLog.log(GameEventLog.Event.SPAWNED, cell, 1 << exponentsAfter[cell], 0);
+			}
+
+		if(eventLog != null && status == Twenty48Game.GameStatus.WIN)
+			eventLog.log(GameEventLog.Event.WON, game.getScore(), largestValue, game.getMoveCount());
+		if(eventLog != null && (statusAfterWin == Twenty48Game.GameStatus.LOST || statusAfterWin == Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE))
+			eventLog.log(GameEventLog.Event.LOST, game.getScore(), largestValue, game.getMoveCount());
+
+		byte[] swap = exponentsBefore;		//The board after this move is the board before the next one
+		exponentsBefore = exponentsAfter;
+		exponentsAfter = swap;
+		return spawnedCell;
+	}
+
+	private void logMerge(int cell, int exponent)
+	{
+		eventLog.log(GameEventLog.Event.MERGED, cell, 1 << exponent, 0);
+	}
+
+	private void logGameShown(GameEventLog.Event event)
+	{
+		//Logs that a game was started or loaded and reads its board for the next move
+		if(eventLog == null)	return;
+		readBoard();
+		eventLog.log(event, game.TOTAL_ROWS, game.TOTAL_COLUMNS, game.getScore());
+	}
+
+	private void readBoard()
+	{
+		//Reads the board into exponentsBefore for followMove, making new arrays if there are none yet or the board size changed
+		int totalCells = game.TOTAL_ROWS * game.TOTAL_COLUMNS;
+		if(exponentsBefore == null || exponentsBefore.length != totalCells)
+		{
+			exponentsBefore = new byte[totalCells];
+			exponentsAfter = new byte[totalCells];
+			exponentsMoved = new byte[totalCells];
+		}
+		readExponents(exponentsBefore);
+	}
+
+	private void readExponents(byte[] exponents)
+	{
+		//Copies the cell exponents of the game into exponents, cell index row * columns + column, and finds the largest cell value
+		int columns = game.TOTAL_COLUMNS;
+		int largestExponent = 0;
+		for(int row = 0; row < game.TOTAL_ROWS; row ++)
+			for(int column = 0; column < columns; column ++)
+			{
+				byte exponent = GameHistory.exponentOf(game.getCellValue(row, column));
+				exponents[row * columns + column] = exponent;
+				largestExponent = Math.max(largestExponent, exponent);
+			}
+		largestValue = largestExponent == 0 ? 0 : 1 << largestExponent;
+	}
+
+	private static GameHistory createHistory(Twenty48Game game)
+	{
+		//Starts the history of a game. The checkpoint interval is set with the system property twenty48.historyCheckpointInterval
+		return new GameHistory(game, Integer.getInteger("twenty48.historyCheckpointInterval", GameHistory.DEFAULT_CHECKPOINT_INTERVAL));
+	}
+
+	private void readStatus()
+	{
+		//Reads the status of the game after a change. A win is read twice to see if a move is still possible after it
+		status = game.getGameStatus();
+		statusAfterWin = (status == Twenty48Game.GameStatus.WIN) ? game.getGameStatus() : status;
+	}
+
+	private void publish()
+	{
+		//Makes a snapshot of the game and puts it in the slot. A win or a loss stops moves and autoplay until the user answers
+
+		boolean gameOver = status == Twenty48Game.GameStatus.LOST || status == Twenty48Game.GameStatus.WON_BUT_UNPLAYABLE;
+		boolean paused = commands.isEmpty() && !autoplay;
+		boolean reportWin = winDeferred && (paused || gameOver);
+		BoardSnapshot snapshot = new BoardSnapshot(game, latestSnapshot, status, statusAfterWin, reportWin, gameNumber, sequenceNumber ++);
+		if(reportWin || gameOver || status == Twenty48Game.GameStatus.WIN)
+		{
+			waitingForUser = true;
+			autoplay = false;
+		}
+		if(reportWin)	winDeferred = false;
+		movesSincePublish = 0;
+		unpublishedMoves = false;
+		latestSnapshot = snapshot;
+		pendingSnapshot.set(snapshot);
+	}
+}
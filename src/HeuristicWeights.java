@@ -0,0 +1,179 @@
+/*
+ * The weights of the board evaluation used by ExpectimaxSearch. Every weight multiplies one feature of a packed board:
+ *		monotonicity:	penalty for rows and columns whose exponents are not in increasing or decreasing order
+ *		smoothness:		penalty for the exponent difference between neighboring cells
+ *		emptyCells:		reward for every empty cell
+ *		cornerBonus:	reward of the largest exponent when the largest cell is in a corner
+ * Weights tuned by WeightTuner are saved to a properties file per board size that forBoard() loads, so the hints of the game window
+ * use the tuned weights when there are some.
+ */
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+public class HeuristicWeights
+{
+	public static final HeuristicWeights DEFAULT = new HeuristicWeights(47, 11, 270, 35);
+
+	public static File fileFor(int rows, int columns)
+	{
+		//Returns the file tuned weights for the board size are kept in. The file is in the working directory like "HighScore.dat"
+		return new File("Weights" + rows + "x" + columns + ".properties");
+	}
+
+	public static HeuristicWeights forBoard(int rows, int columns)
+	{
+		//Returns the tuned weights of the board size or DEFAULT if there are none or they can not be read
+		File weightsFile = fileFor(rows, columns);
+		if(!weightsFile.exists())	return DEFAULT;
+		try
+		{
+			return load(weightsFile);
+		}
+		catch(IOException e)
+		{
+			return DEFAULT;
+		}
+	}
+
+	public static HeuristicWeights load(File weightsFile) throws IOException
+	{
+		//Reads weights saved by save(). Throws an IOException if the file is missing or a weight is missing or not a number
+		Properties properties = new Properties();
+		try(InputStream input = new FileInputStream(weightsFile))
+		{
+			properties.load(input);
+		}
+		return fromProperties(properties, "");
+	}
+
+	static HeuristicWeights fromProperties(Properties properties, String prefix) throws IOException
+	{
+		//Reads the weights from properties whose names start with the prefix
+		try
+		{
+			return new HeuristicWeights(Double.parseDouble(properties.getProperty(prefix + "monotonicity")),
+					Double.parseDouble(properties.getProperty(prefix + "smoothness")),
+					Double.parseDouble(properties.getProperty(prefix + "emptyCells")),
+					Double.parseDouble(properties.getProperty(prefix + "cornerBonus")));
+		}
+		catch(NullPointerException | NumberFormatException e)
+		{
+			throw new IOException("The weights are missing or are not numbers", e);
+		}
+	}
+
+	public final double MONOTONICITY;
+	public final double SMOOTHNESS;
+	public final double EMPTY_CELLS;
+	public final double CORNER_BONUS;
+
+	public HeuristicWeights(double monotonicity, double smoothness, double emptyCells, double cornerBonus)
+	{
+		this.MONOTONICITY = monotonicity;
+		this.SMOOTHNESS = smoothness;
+		this.EMPTY_CELLS = emptyCells;
+		this.CORNER_BONUS = cornerBonus;
+	}
+
+	public double evaluate(long board, int rows, int columns)
+	{
+		/*
+		 * Returns the value of the board. A larger value is a board that is more likely to keep going
+		 */
+
+		int totalCells = rows * columns;
+		int emptyCells = 0;
+		int maxExponent = 0;
+		double monotonicityPenalty = 0;
+		double smoothnessPenalty = 0;
+
+		for(int cell = 0; cell < totalCells; cell ++)
+		{
+			int exponent = PackedBoard.getExponent(board, cell);
+			if(exponent == 0)	emptyCells ++;
+			if(exponent > maxExponent)	maxExponent = exponent;
+		}
+
+		//Rows: compare every cell to the cell on its right
+		for(int row = 0; row < rows; row ++)
+		{
+			double increasing = 0, decreasing = 0;
+			for(int column = 0; column + 1 < columns; column ++)
+			{
+				int current = PackedBoard.getExponent(board, row * columns + column);
+				int next = PackedBoard.getExponent(board, row * columns + column + 1);
+				if(current > next)	decreasing += current - next;
+				else				increasing += next - current;
+				if(current != 0 && next != 0)	smoothnessPenalty += Math.abs(current - next);
+			}
+			monotonicityPenalty += Math.min(increasing, decreasing);
+		}
+
+		//Columns: compare every cell to the cell above it
+		for(int column = 0; column < columns; column ++)
+		{
+			double increasing = 0, decreasing = 0;
+			for(int row = 0; row + 1 < rows; row ++)
+			{
+				int current = PackedBoard.getExponent(board, row * columns + column);
+				int next = PackedBoard.getExponent(board, (row + 1) * columns + column);
+				if(current > next)	decreasing += current - next;
+				else				increasing += next - current;
+				if(current != 0 && next != 0)	smoothnessPenalty += Math.abs(current - next);
+			}
+			monotonicityPenalty += Math.min(increasing, decreasing);
+		}
+
+		//Is the largest cell in a corner?
+		int lastCell = totalCells - 1;
+		boolean maxInCorner = PackedBoard.getExponent(board, 0) == maxExponent || PackedBoard.getExponent(board, columns - 1) == maxExponent
+				|| PackedBoard.getExponent(board, lastCell - columns + 1) == maxExponent || PackedBoard.getExponent(board, lastCell) == maxExponent;
+
+		return EMPTY_CELLS * emptyCells - MONOTONICITY * monotonicityPenalty - SMOOTHNESS * smoothnessPenalty
+				+ (maxInCorner ? CORNER_BONUS * maxExponent : 0);
+	}
+
+	public void save(File weightsFile, String comment) throws IOException
+	{
+		//Writes the weights to a properties file that load() reads
+		Properties properties = new Properties();
+		toProperties(properties, "");
+		try(OutputStream output = new FileOutputStream(weightsFile))
+		{
+			properties.store(output, comment);
+		}
+	}
+
+	void toProperties(Properties properties, String prefix)
+	{
+		//Adds the weights to properties with names that start with the prefix
+		properties.setProperty(prefix + "monotonicity", Double.toString(MONOTONICITY));
+		properties.setProperty(prefix + "smoothness", Double.toString(SMOOTHNESS));
+		properties.setProperty(prefix + "emptyCells", Double.toString(EMPTY_CELLS));
+		properties.setProperty(prefix + "cornerBonus", Double.toString(CORNER_BONUS));
+	}
+
+	public double[] toArray()
+	{
+		//Returns the weights in the order of the constructor arguments
+		return new double[] {MONOTONICITY, SMOOTHNESS, EMPTY_CELLS, CORNER_BONUS};
+	}
+
+	public static HeuristicWeights fromArray(double[] weights)
+	{
+		//Creates weights from an array in the order of the constructor arguments
+		return new HeuristicWeights(weights[0], weights[1], weights[2], weights[3]);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("monotonicity=%.3f smoothness=%.3f emptyCells=%.3f cornerBonus=%.3f",
+				MONOTONICITY, SMOOTHNESS, EMPTY_CELLS, CORNER_BONUS);
+	}
+}
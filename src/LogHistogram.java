@@ -0,0 +1,87 @@
+/*
+ * A histogram of non-negative longs that takes the same fixed memory however many values are added, used by GameAnalytics for scores
+ * and move counts. Values below 2^SUB_BUCKET_BITS each have their own bucket. Larger values share a bucket with the values that have the
+ * same highest bit and the same SUB_BUCKET_BITS bits after it, so any quantile is within 1 / 2^SUB_BUCKET_BITS (under 1%) of the true
+ * value. Two histograms merge exactly by adding their buckets, so histograms filled by different threads give the same quantiles as
+ * one histogram of every value.
+ */
+public class LogHistogram
+{
+	public static final int SUB_BUCKET_BITS = 7;
+	public static final int TOTAL_BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+	public void add(long value)
+	{
+		//Adds a value. Negative values are counted as 0
+		value = Math.max(0, value);
+		counts[bucketOf(value)] ++;
+		totalCount ++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	public void merge(LogHistogram other)
+	{
+		//Adds every value of the other histogram to this one
+		for(int bucket = 0; bucket < TOTAL_BUCKETS; bucket ++)	counts[bucket] += other.counts[bucket];
+		totalCount += other.totalCount;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount()			{ return totalCount; }
+	public long getMin()			{ return totalCount == 0 ? 0 : min; }
+	public long getMax()			{ return max; }
+	public double getMean()			{ return totalCount == 0 ? 0 : sum / totalCount; }
+
+	public long valueAtQuantile(double quantile)
+	{
+		//Returns the value that the fraction quantile (0 to 1) of the values are at or below, to within the bucket width
+		if(totalCount == 0)	return 0;
+		long rank = Math.max(1, (long)Math.ceil(Math.min(1, Math.max(0, quantile)) * totalCount));
+		long seen = 0;
+		for(int bucket = 0; bucket < TOTAL_BUCKETS; bucket ++)
+		{
+			seen += counts[bucket];
+			if(seen >= rank)	return Math.max(min, Math.min(max, middleOf(bucket)));
+		}
+		return max;
+	}
+
+	public double fractionAtOrBelow(long value)
+	{
+		//Returns the fraction of the values that are at or below the value, counting the whole bucket the value is in
+		if(totalCount == 0)	return 0;
+		if(value < 0)		return 0;
+		long below = 0;
+		for(int bucket = 0, last = bucketOf(value); bucket <= last; bucket ++)	below += counts[bucket];
+		return (double)below / totalCount;
+	}
+
+	private final long[] counts = new long[TOTAL_BUCKETS];
+	private long totalCount;
+	private double sum;						//A double so adding 100 million scores can not overflow
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	private static int bucketOf(long value)
+	{
+		/*
+		 * Returns the bucket of a value. Below 2^(SUB_BUCKET_BITS + 1) every value has its own bucket. Above that the value is shifted
+		 * right until it has SUB_BUCKET_BITS + 1 bits and the bucket is found from the shift and the bits that are left
+		 */
+
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return (shift << SUB_BUCKET_BITS) + (int)(value >>> shift);
+	}
+
+	private static long middleOf(int bucket)
+	{
+		//Returns the middle of the values in the bucket
+		int shift = Math.max(0, (bucket >>> SUB_BUCKET_BITS) - 1);
+		long first = (long)(bucket - (shift << SUB_BUCKET_BITS)) << shift;
+		return first + ((1L << shift) >>> 1);
+	}
+}
@@ -0,0 +1,17 @@
+/*
+ * The four directions a move of 2048 can shift the cells. Row 0 of a board is the bottom row, the same as a Twenty48Game, so UP
+ * shifts the cells toward the last row and DOWN shifts them toward row 0. LEFT shifts toward column 0.
+ * The ordinal of a direction is used when a direction is written to a file so the order must not change.
+ */
+public enum MoveDirection
+{
+	LEFT, RIGHT, UP, DOWN;
+
+	private static final MoveDirection[] DIRECTIONS = values();		//Shared copy of values() so lookups don't allocate
+
+	public static MoveDirection fromOrdinal(int ordinal)
+	{
+		//Returns the direction with the ordinal or null if the ordinal is not a direction (-1 is used for "no move")
+		return (ordinal >= 0 && ordinal < DIRECTIONS.length) ? DIRECTIONS[ordinal] : null;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * What one move of a batch made by GameLogicThread.submitMoves or Game2048GUI.applyMoves did: whether the board changed, the score the
+ * move gained, the cell that was spawned after it and the status of the game after it. A move that did not change the board has a score
+ * gain of 0 and no spawned cell.
+ */
+import twentyFortyEight.Twenty48Game;
+
+public final class MoveResult
+{
+	MoveResult(MoveDirection direction, boolean moved, int scoreGained, int spawnRow, int spawnColumn, int spawnValue, Twenty48Game.GameStatus status)
+	{
+		this.direction = direction;
+		this.moved = moved;
+		this.scoreGained = scoreGained;
+		this.spawnRow = spawnRow;
+		this.spawnColumn = spawnColumn;
+		this.spawnValue = spawnValue;
+		this.status = status;
+	}
+
+	public MoveDirection getDirection()				{ return direction; }
+	public boolean isMoved()						{ return moved; }
+	public int getScoreGained()						{ return scoreGained; }
+	public int getSpawnRow()						{ return spawnRow; }		//Row 0 is the bottom row. -1 if no cell was spawned
+	public int getSpawnColumn()						{ return spawnColumn; }		//-1 if no cell was spawned
+	public int getSpawnValue()						{ return spawnValue; }		//0 if no cell was spawned
+	public Twenty48Game.GameStatus getStatus()		{ return status; }
+
+	@Override
+	public String toString()
+	{
+		if(!moved)	return direction + " did not move";
+		return direction + " +" + scoreGained + (spawnValue == 0 ? "" : " spawned " + spawnValue + " at " + spawnRow + "," + spawnColumn) + " " + status;
+	}
+
+	private final MoveDirection direction;
+	private final boolean moved;
+	private final int scoreGained;
+	private final int spawnRow;
+	private final int spawnColumn;
+	private final int spawnValue;
+	private final Twenty48Game.GameStatus status;
+}
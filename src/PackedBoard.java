@@ -0,0 +1,271 @@
+/*
+ * Headless 2048 board logic for boards with at most 16 cells. A board is packed into a long with 4 bits per cell. Each 4 bits hold the
+ * exponent of the cell value (0 = empty, 1 = 2, 2 = 4 ... 15 = 32768). Cell index is row * columns + column and row 0 is the bottom row,
+ * the same layout as a Twenty48Game. Exponents are capped at 15 so a merge of two 32768 cells stays 32768.
+ * The score of a move is not stored in the board. Instead every board has a potential, the score it took to build all of its cells out
+ * of 2's. Merging two cells of 2^k into 2^(k+1) raises the potential by exactly 2^(k+1), so the score of a move is the potential after
+ * the move minus the potential before it.
+ * A board looks the same to the game after it is rotated or reflected, so boards are reduced to a canonical form: the smallest long over
+ * every symmetry of the board. A square board has 8 symmetries (rotations and reflections) and other boards have 4 (the reflections).
+ * Symmetry s transposes the board when bit 2 is set, then mirrors the columns when bit 0 is set and mirrors the rows when bit 1 is set.
+ */
+public final class PackedBoard
+{
+	public static final int MAX_CELLS = 16;					//The most cells a long can hold
+	public static final int MAX_EXPONENT = 15;				//The largest exponent 4 bits can hold
+	public static final double SPAWN_FOUR_PROBABILITY = 0.1;	//Chance that a spawned cell is a 4 instead of a 2
+
+	private PackedBoard()
+	{
+		//Only static methods
+	}
+
+	public static boolean fits(int rows, int columns)
+	{
+		//Returns true if a board of the size can be packed into a long
+		return rows > 0 && columns > 0 && rows * columns <= MAX_CELLS;
+	}
+
+	public static int getExponent(long board, int cell)
+	{
+		//Returns the exponent of the cell
+		return (int)(board >>> (cell << 2)) & 0xF;
+	}
+
+	public static long setExponent(long board, int cell, int exponent)
+	{
+		//Returns the board with the cell set to the exponent
+		int shift = cell << 2;
+		return (board & ~(0xFL << shift)) | ((long)exponent << shift);
+	}
+
+	public static int getValue(long board, int cell)
+	{
+		//Returns the value of the cell as it is displayed (0, 2, 4, 8 ...)
+		int exponent = getExponent(board, cell);
+		return exponent == 0 ? 0 : 1 << exponent;
+	}
+
+	public static long fromValues(int[] values)
+	{
+		/*
+		 * Packs cell values (0, 2, 4 ...) into a board. values[row * columns + column] is the cell value. Throws an
+		 * IllegalArgumentException if there are too many cells or a value can not be packed
+		 */
+
+		if(values.length > MAX_CELLS)	throw new IllegalArgumentException("A packed board holds at most " + MAX_CELLS + " cells");
+		long board = 0;
+		for(int cell = 0; cell < values.length; cell ++)
+		{
+			int value = values[cell];
+			if(value == 0)	continue;
+			int exponent = Integer.numberOfTrailingZeros(value);
+			if(Integer.bitCount(value) != 1 || exponent > MAX_EXPONENT)
+				throw new IllegalArgumentException("The cell value " + value + " can not be packed");
+			board = setExponent(board, cell, exponent);
+		}
+		return board;
+	}
+
+	public static int countEmpty(long board, int totalCells)
+	{
+		//Returns the number of empty cells on the board
+		int empty = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+			if(getExponent(board, cell) == 0)	empty ++;
+		return empty;
+	}
+
+	public static int getMaxExponent(long board, int totalCells)
+	{
+		//Returns the largest exponent on the board
+		int max = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+			max = Math.max(max, getExponent(board, cell));
+		return max;
+	}
+
+	public static long getTileSum(long board, int totalCells)
+	{
+		//Returns the sum of all the cell values. The sum only changes when a cell is spawned
+		long sum = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+			sum += getValue(board, cell);
+		return sum;
+	}
+
+	public static long getPotential(long board, int totalCells)
+	{
+		//Returns the score it takes to build every cell out of 2's. A cell of 2^k is worth (k - 1) * 2^k
+		long potential = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+		{
+			int exponent = getExponent(board, cell);
+			if(exponent > 1)	potential += (long)(exponent - 1) << exponent;
+		}
+		return potential;
+	}
+
+	public static int getMoveScore(long before, long after, int totalCells)
+	{
+		//Returns the score gained by the move that turned the before board into the after board (no spawn in between)
+		return (int)(getPotential(after, totalCells) - getPotential(before, totalCells));
+	}
+
+	public static long move(long board, int rows, int columns, MoveDirection direction)
+	{
+		/*
+		 * Returns the board after shifting and merging every line in the direction. A cell is merged at most once per move.
+		 * If nothing can move the same board is returned so callers compare the result to the argument to see if the move was possible
+		 */
+
+		boolean horizontal = direction == MoveDirection.LEFT || direction == MoveDirection.RIGHT;
+		int totalLines = horizontal ? rows : columns;		//Number of rows or columns that are shifted
+		int lineLength = horizontal ? columns : rows;		//Number of cells in each shifted line
+		long result = 0;
+
+		for(int line = 0; line < totalLines; line ++)
+		{
+			int written = 0;		//The number of cells written to the front of the line
+			int pending = 0;		//The exponent waiting to see if the next cell merges with it. 0 if nothing is waiting
+			for(int position = 0; position < lineLength; position ++)
+			{
+				int exponent = getExponent(board, lineCell(rows, columns, direction, line, position));
+				if(exponent == 0)				continue;
+				if(pending == 0)				pending = exponent;
+				else if(pending == exponent)
+				{
+					int merged = Math.min(exponent + 1, MAX_EXPONENT);
+					result = setExponent(result, lineCell(rows, columns, direction, line, written ++), merged);
+					pending = 0;
+				}
+				else
+				{
+					result = setExponent(result, lineCell(rows, columns, direction, line, written ++), pending);
+					pending = exponent;
+				}
+			}
+			if(pending != 0)	result = setExponent(result, lineCell(rows, columns, direction, line, written), pending);
+		}
+		return result;
+	}
+
+	public static boolean canMove(long board, int rows, int columns)
+	{
+		//Returns true if at least one direction changes the board
+		for(MoveDirection direction : MoveDirection.values())
+			if(move(board, rows, columns, direction) != board)	return true;
+		return false;
+	}
+
+	public static int countSymmetries(int rows, int columns)
+	{
+		//Returns the number of symmetries of a board of the size. Only square boards can be transposed
+		return rows == columns ? 8 : 4;
+	}
+
+	public static long transform(long board, int rows, int columns, int symmetry)
+	{
+		//Returns the board after applying the symmetry. The result has the same size as the board
+
+		long result = 0;
+		for(int row = 0; row < rows; row ++)
+			for(int column = 0; column < columns; column ++)
+			{
+				int exponent = getExponent(board, row * columns + column);
+				if(exponent == 0)	continue;
+				int newRow = row, newColumn = column;
+				if((symmetry & 4) != 0)
+				{
+					newRow = column;
+					newColumn = row;
+				}
+				if((symmetry & 1) != 0)	newColumn = columns - 1 - newColumn;
+				if((symmetry & 2) != 0)	newRow = rows - 1 - newRow;
+				result = setExponent(result, newRow * columns + newColumn, exponent);
+			}
+		return result;
+	}
+
+	public static MoveDirection transform(MoveDirection direction, int symmetry)
+	{
+		//Returns the direction that a move in the direction becomes after applying the symmetry to the board
+
+		MoveDirection result = direction;
+		if((symmetry & 4) != 0)
+		{
+			switch(result)
+			{
+			case LEFT:		result = MoveDirection.DOWN;	break;
+			case DOWN:		result = MoveDirection.LEFT;	break;
+			case RIGHT:		result = MoveDirection.UP;		break;
+			default:		result = MoveDirection.RIGHT;
+			}
+		}
+		if((symmetry & 1) != 0 && (result == MoveDirection.LEFT || result == MoveDirection.RIGHT))
+			result = result == MoveDirection.LEFT ? MoveDirection.RIGHT : MoveDirection.LEFT;
+		if((symmetry & 2) != 0 && (result == MoveDirection.UP || result == MoveDirection.DOWN))
+			result = result == MoveDirection.UP ? MoveDirection.DOWN : MoveDirection.UP;
+		return result;
+	}
+
+	public static MoveDirection untransform(MoveDirection direction, int symmetry)
+	{
+		//Returns the direction on the original board of a move in the direction on the board after applying the symmetry
+		for(MoveDirection original : MoveDirection.values())
+			if(transform(original, symmetry) == direction)	return original;
+		return null;
+	}
+
+	public static int findCanonicalSymmetry(long board, int rows, int columns)
+	{
+		//Returns the symmetry that turns the board into its canonical form (the smallest long over every symmetry)
+
+		int bestSymmetry = 0;
+		long bestBoard = board;
+		for(int symmetry = 1; symmetry < countSymmetries(rows, columns); symmetry ++)
+		{
+			long transformed = transform(board, rows, columns, symmetry);
+			if(Long.compareUnsigned(transformed, bestBoard) < 0)
+			{
+				bestBoard = transformed;
+				bestSymmetry = symmetry;
+			}
+		}
+		return bestSymmetry;
+	}
+
+	public static long hash(long board)
+	{
+		//Mixes the bits of the board so boards that differ in one cell land far apart in a hash table
+		long hash = board * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		hash *= 0xD6E8FEB86659FD93L;
+		return hash ^ (hash >>> 32);
+	}
+
+	public static String toString(long board, int rows, int columns)
+	{
+		//Returns the cell values with the top row first, the way the board is displayed
+		StringBuilder text = new StringBuilder();
+		for(int row = rows - 1; row >= 0; row --)
+		{
+			for(int column = 0; column < columns; column ++)
+				text.append(String.format("%6d", getValue(board, row * columns + column)));
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private static int lineCell(int rows, int columns, MoveDirection direction, int line, int position)
+	{
+		//Returns the cell index of the position in the line. Position 0 is the cell the line is shifted toward
+		switch(direction)
+		{
+		case LEFT:		return line * columns + position;
+		case RIGHT:		return line * columns + (columns - 1 - position);
+		case UP:		return (rows - 1 - position) * columns + line;
+		default:		return position * columns + line;
+		}
+	}
+}
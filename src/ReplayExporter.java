@@ -0,0 +1,324 @@
+/*
+ * Renders every move of a replay saved by the game window (Alt + R) to a numbered PNG file, without a window or JavaFX.
+ * Usage: java ReplayExporter replayFile outputDirectory [cellSide] [theme]
+ * cellSide is the width of a tile in pixels (DEFAULT_CELL_SIDE by default) and theme is the name of a Theme (Classic by default).
+ * Frame n is the board after the nth change of the game, so frame 0 is the game as it was started or loaded. The frames can be turned
+ * into a video with any encoder that reads image sequences, for example: ffmpeg -framerate 30 -i frame%05d.png replay.mp4
+ *
+ * Frames are drawn the way a CellPane2048 draws its cell: a tile with rounded corners in the tile color of the exponent and the value
+ * in the text color of the exponent, spaced like the board of the game window. The pixels are written straight into an int array and
+ * the value is drawn with a built in 5x7 digit font, so nothing needs a graphics device.
+ * The frames are split into runs of consecutive moves that are drawn and encoded in parallel on every core. Each run has its own
+ * pixel, deflate and file buffers and reuses them for every frame of the run. A theme has only a few colors so the PNG files are
+ * encoded by hand with a palette: the frames are drawn with palette indexes instead of colors, one byte per pixel, and deflated at the
+ * fastest level into one IDAT chunk. That deflates a third of the bytes of an RGB image and the long runs of one color still compress
+ * well. Each file is written with a single FileChannel write.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.stream.IntStream;
+
+public class ReplayExporter
+{
+	public static final int DEFAULT_CELL_SIDE = 66;		//Half the size of a cell of a 4x4 board in the game window
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java ReplayExporter replayFile outputDirectory [cellSide] [theme]");
+			System.exit(1);
+		}
+		File replayFile = new File(args[0]);
+		Path outputDirectory = Path.of(args[1]);
+		int cellSide = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CELL_SIDE;
+		Theme theme = args.length > 3 ? Theme.forName(args[3]) : Theme.CLASSIC;
+
+		long startNanos = System.nanoTime();
+		GameHistory history = GameHistory.load(replayFile, GameHistory.DEFAULT_CHECKPOINT_INTERVAL);
+		int frames = new ReplayExporter(theme, cellSide).export(history, outputDirectory);
+		System.out.printf("Wrote %d frames to %s in %.1f s%n", frames, outputDirectory, (System.nanoTime() - startNanos) / 1e9);
+	}
+
+	public final int CELL_SIDE;			//Width and height of a tile in pixels
+	public final int BORDER;			//Space around every tile in pixels, so two tiles are 2 * BORDER apart
+
+	public ReplayExporter(Theme theme, int cellSide)
+	{
+		//Creates an exporter that draws tiles of cellSide pixels in the colors of the theme. Throws an IllegalArgumentException for tiny tiles
+		if(cellSide < 8)	throw new IllegalArgumentException("Tiles must be at least 8 pixels wide");
+		this.theme = theme;
+		CELL_SIDE = cellSide;
+		BORDER = Math.max(1, Math.round(cellSide / 132f * 9));		//Same proportions as CellPane2048
+		tileInsets = createTileInsets(cellSide, cellSide / 132.0 * 9 / 2);
+
+		//Give every color of the theme a palette index
+		int[] colors = new int[1 + 2 * (Theme.MAX_EXPONENT + 1)];
+		int totalColors = 0;
+		boardIndex = indexOf(theme.getBoardColor(), colors, totalColors);
+		if(boardIndex == totalColors)	totalColors ++;
+		for(int exponent = 0; exponent <= Theme.MAX_EXPONENT; exponent ++)
+		{
+			tileIndexes[exponent] = indexOf(theme.getTileColor(exponent), colors, totalColors);
+			if(tileIndexes[exponent] == totalColors)	totalColors ++;
+			textIndexes[exponent] = indexOf(theme.getTextColor(exponent), colors, totalColors);
+			if(textIndexes[exponent] == totalColors)	totalColors ++;
+		}
+		palette = Arrays.copyOf(colors, totalColors);
+	}
+
+	public int getFrameWidth(int columns)	{ return columns * (CELL_SIDE + 2 * BORDER); }
+	public int getFrameHeight(int rows)		{ return rows * (CELL_SIDE + 2 * BORDER); }
+
+	public int export(GameHistory history, Path outputDirectory) throws IOException
+	{
+		//Writes a PNG file for every state of the history into the directory, creating it if needed. Returns the number of frames
+
+		Files.createDirectories(outputDirectory);
+		int frames = history.size();
+		String nameFormat = "frame%0" + Math.max(5, Integer.toString(frames - 1).length()) + "d.png";
+		int runs = Math.min(frames, Runtime.getRuntime().availableProcessors() * 4);		//More runs than cores so no core waits on a slow run
+		try
+		{
+			IntStream.range(0, runs).parallel().forEach(run->
+			{
+				FrameWriter writer = new FrameWriter(history.TOTAL_ROWS, history.TOTAL_COLUMNS);
+				try
+				{
+					for(int state = (int)((long)frames * run / runs); state < (long)frames * (run + 1) / runs; state ++)
+					{
+						history.seek(state, writer.values);
+						renderIndexes(writer.values, history.TOTAL_ROWS, history.TOTAL_COLUMNS, writer.pixels);
+						writer.write(outputDirectory.resolve(String.format(nameFormat, state)));
+					}
+				}
+				catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+				finally
+				{
+					writer.deflater.end();
+				}
+			});
+		}
+		catch(UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		return frames;
+	}
+
+	public void renderFrame(int[] values, int rows, int columns, int[] pixelsOut)
+	{
+		/*
+		 * Draws the board into pixelsOut, one ARGB int per pixel from the top left row by row. values[row * columns + column] is the
+		 * value of a cell and row 0 is the bottom row like a Twenty48Game, so it is drawn at the bottom
+		 */
+
+		renderIndexes(values, rows, columns, pixelsOut);
+		for(int pixel = getFrameWidth(columns) * getFrameHeight(rows) - 1; pixel >= 0; pixel --)	pixelsOut[pixel] = palette[pixelsOut[pixel]];
+	}
+
+	private final Theme theme;				//Colors of the frames
+	private final int[] tileInsets;			//The pixels left out at both ends of every row of a tile to round its corners
+	private final int[] palette;			//Every color of the theme once
+	private final int boardIndex;			//Palette index of the board color
+	private final int[] tileIndexes = new int[Theme.MAX_EXPONENT + 1];	//Palette index of the tile color of every exponent
+	private final int[] textIndexes = new int[Theme.MAX_EXPONENT + 1];	//Palette index of the text color of every exponent
+
+	private static int indexOf(int color, int[] colors, int totalColors)
+	{
+		//Returns the index of the color in the first totalColors colors, or adds it and returns totalColors if it is not there
+		for(int index = 0; index < totalColors; index ++)
+			if(colors[index] == color)	return index;
+		colors[totalColors] = color;
+		return totalColors;
+	}
+
+	private void renderIndexes(int[] values, int rows, int columns, int[] pixelsOut)
+	{
+		//Draws the board into pixelsOut like renderFrame() but with the palette index of every pixel instead of its color
+
+		int width = getFrameWidth(columns);
+		Arrays.fill(pixelsOut, 0, width * getFrameHeight(rows), boardIndex);
+		int pitch = CELL_SIDE + 2 * BORDER;
+		for(int row = 0; row < rows; row ++)
+			for(int column = 0; column < columns; column ++)
+			{
+				int value = values[row * columns + column];
+				int exponent = value == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(value);
+				int left = column * pitch + BORDER;
+				int top = (rows - 1 - row) * pitch + BORDER;
+				drawTile(pixelsOut, width, left, top, tileIndexes[Math.min(exponent, Theme.MAX_EXPONENT)]);
+				if(value != 0)	drawValue(pixelsOut, width, left, top, value, textIndexes[Math.min(exponent, Theme.MAX_EXPONENT)]);
+			}
+	}
+
+	private static int[] createTileInsets(int side, double cornerRadius)
+	{
+		//Returns how many pixels at each end of every row of a square are outside its rounded corners. A pixel is inside if its center is
+		int[] insets = new int[side];
+		for(int y = 0; y < side; y ++)
+		{
+			double dy = Math.max(0, Math.abs(y + 0.5 - side / 2.0) - (side / 2.0 - cornerRadius));
+			double dx = Math.sqrt(Math.max(0, cornerRadius * cornerRadius - dy * dy));	//How far the row reaches into the corner
+			insets[y] = (int)Math.max(0, Math.ceil(cornerRadius - dx - 0.5));
+		}
+		return insets;
+	}
+
+	private void drawTile(int[] pixels, int width, int left, int top, int color)
+	{
+		for(int y = 0; y < CELL_SIDE; y ++)
+		{
+			int rowStart = (top + y) * width + left;
+			Arrays.fill(pixels, rowStart + tileInsets[y], rowStart + CELL_SIDE - tileInsets[y], color);
+		}
+	}
+
+	private static final String[][] DIGITS =		//5x7 glyph of every digit, top row first
+		{
+			{" ### ", "#   #", "#  ##", "# # #", "##  #", "#   #", " ### "},
+			{"  #  ", " ##  ", "  #  ", "  #  ", "  #  ", "  #  ", " ### "},
+			{" ### ", "#   #", "    #", "   # ", "  #  ", " #   ", "#####"},
+			{"#####", "   # ", "  #  ", "   # ", "    #", "#   #", " ### "},
+			{"   # ", "  ## ", " # # ", "#  # ", "#####", "   # ", "   # "},
+			{"#####", "#    ", "#### ", "    #", "    #", "#   #", " ### "},
+			{"  ## ", " #   ", "#    ", "#### ", "#   #", "#   #", " ### "},
+			{"#####", "    #", "   # ", "  #  ", " #   ", " #   ", " #   "},
+			{" ### ", "#   #", "#   #", " ### ", "#   #", "#   #", " ### "},
+			{" ### ", "#   #", "#   #", " ####", "    #", "   # ", " ##  "}
+		};
+	private static final int GLYPH_WIDTH = 5;
+	private static final int GLYPH_HEIGHT = 7;
+
+	private void drawValue(int[] pixels, int width, int left, int top, int value, int color)
+	{
+		/*
+		 * Draws the value centered in the tile. The digits are as tall as the label font of a CellPane2048 (42/132 of the tile) unless
+		 * the number would not fit across the tile, then they are made smaller
+		 */
+
+		String text = Integer.toString(value);
+		int advance = GLYPH_WIDTH + 1;			//A glyph and the space after it
+		int scale = Math.max(1, Math.min(Math.round(CELL_SIDE * 42f / 132 / GLYPH_HEIGHT), CELL_SIDE * 9 / 10 / (text.length() * advance)));
+		int textWidth = (text.length() * advance - 1) * scale;
+		int textLeft = left + (CELL_SIDE - textWidth) / 2;
+		int textTop = top + (CELL_SIDE - GLYPH_HEIGHT * scale) / 2;
+		for(int digit = 0; digit < text.length(); digit ++)
+		{
+			String[] glyph = DIGITS[text.charAt(digit) - '0'];
+			for(int glyphY = 0; glyphY < GLYPH_HEIGHT; glyphY ++)
+				for(int glyphX = 0; glyphX < GLYPH_WIDTH; glyphX ++)
+				{
+					if(glyph[glyphY].charAt(glyphX) != '#')	continue;
+					int blockLeft = textLeft + (digit * advance + glyphX) * scale;
+					int blockTop = textTop + glyphY * scale;
+					for(int y = blockTop; y < blockTop + scale; y ++)
+						Arrays.fill(pixels, y * width + blockLeft, y * width + blockLeft + scale, color);
+				}
+		}
+	}
+
+	private final class FrameWriter
+	{
+		/*
+		 * The buffers one run of frames reuses for every frame: the cell values, the palette indexes, the filtered rows, the deflated
+		 * rows and the PNG file
+		 */
+
+		final int width;
+		final int height;
+		final int[] values;
+		final int[] pixels;					//Palette index of every pixel
+		final byte[] filtered;				//Every row of the image as PNG wants it: a filter type byte then a palette index per pixel
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		final CRC32 crc = new CRC32();
+		byte[] deflated;					//Deflated filtered rows. Grows if an image does not fit
+		ByteBuffer file;					//The PNG file. Grows with deflated
+
+		FrameWriter(int rows, int columns)
+		{
+			width = getFrameWidth(columns);
+			height = getFrameHeight(rows);
+			values = new int[rows * columns];
+			pixels = new int[width * height];
+			filtered = new byte[(1 + width) * height];
+			deflated = new byte[filtered.length / 4 + 1024];
+			file = ByteBuffer.allocate(deflated.length + 3 * palette.length + 64);
+		}
+
+		void write(Path frameFile) throws IOException
+		{
+			//Encodes the pixels as a PNG file and writes it
+
+			//No filter: the palette indexes as they are. Runs of one color are what deflate compresses best
+			int index = 0;
+			for(int y = 0; y < height; y ++)
+			{
+				filtered[index ++] = 0;
+				for(int x = 0; x < width; x ++)	filtered[index ++] = (byte)pixels[y * width + x];
+			}
+
+			deflater.reset();
+			deflater.setInput(filtered);
+			deflater.finish();
+			int deflatedLength = 0;
+			while(!deflater.finished())
+			{
+				if(deflatedLength == deflated.length)	deflated = Arrays.copyOf(deflated, deflated.length * 2);
+				deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength);
+			}
+
+			if(file.capacity() < deflatedLength + 3 * palette.length + 64)	file = ByteBuffer.allocate(deflated.length + 3 * palette.length + 64);
+			file.clear();
+			file.put(PNG_SIGNATURE);
+			int chunkStart = startChunk("IHDR");
+			file.putInt(width).putInt(height).put((byte)8).put((byte)3).put((byte)0).put((byte)0).put((byte)0);	//8 bit palette, not interlaced
+			endChunk(chunkStart);
+			chunkStart = startChunk("PLTE");
+			for(int color : palette)	file.put((byte)(color >> 16)).put((byte)(color >> 8)).put((byte)color);
+			endChunk(chunkStart);
+			chunkStart = startChunk("IDAT");
+			file.put(deflated, 0, deflatedLength);
+			endChunk(chunkStart);
+			endChunk(startChunk("IEND"));
+			file.flip();
+
+			try(FileChannel channel = FileChannel.open(frameFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				while(file.hasRemaining())	channel.write(file);
+			}
+		}
+
+		private int startChunk(String type)
+		{
+			//Leaves room for the length of the chunk and writes its type. Returns where the chunk starts
+			int chunkStart = file.position();
+			file.putInt(0);
+			for(int character = 0; character < 4; character ++)	file.put((byte)type.charAt(character));
+			return chunkStart;
+		}
+
+		private void endChunk(int chunkStart)
+		{
+			//Fills in the length of the chunk and appends the CRC of its type and data
+			file.putInt(chunkStart, file.position() - chunkStart - 8);
+			crc.reset();
+			crc.update(file.array(), chunkStart + 4, file.position() - chunkStart - 4);
+			file.putInt((int)crc.getValue());
+		}
+	}
+
+	private static final byte[] PNG_SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+}
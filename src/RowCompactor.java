@@ -0,0 +1,144 @@
+/*
+ * Moves boards of any size that are kept as one byte per cell, the exponent of the cell value (0 for an empty cell). Cell index is
+ * row * columns + column and row 0 is the bottom row like a Twenty48Game. PackedBoard is faster for boards of at most 16 cells, this
+ * is for the boards that do not fit in a long, for example 4x256.
+ * This class moves every line one cell at a time. getInstance() returns a VectorRowCompactor instead when the JVM was started with
+ * --add-modules jdk.incubator.vector, which moves UP and DOWN a whole row slice at a time. Both give the same boards and scores so
+ * callers never need to know which one they have. The system property twenty48.vectorMoves=false always gives this class.
+ * RowCompactorBenchmark compares the two.
+ * GameLogicThread moves the board from before every logged move with a compactor to find the cells the move merged and the cell
+ * spawned after it. Merges are reported to a MergeListener by the one cell at a time loop, which the vector path can not do.
+ */
+import java.util.Arrays;
+
+public class RowCompactor
+{
+	public static RowCompactor getInstance()
+	{
+		//Returns a new compactor that uses the Vector API if it is available, otherwise a new RowCompactor
+
+		if(Boolean.parseBoolean(System.getProperty("twenty48.vectorMoves", "true")))
+		{
+			try
+			{
+				return (RowCompactor)Class.forName("VectorRowCompactor").getDeclaredConstructor().newInstance();
+			}
+			catch(ReflectiveOperationException | LinkageError e)
+			{
+				//The jdk.incubator.vector module was not added to the JVM
+			}
+		}
+		return new RowCompactor();
+	}
+
+	public interface MergeListener
+	{
+		//Told about every merge of a move. cell is the index the merged cell ended up in and exponent is its new exponent
+		void merged(int cell, int exponent);
+	}
+
+	public String getName()
+	{
+		return "scalar";
+	}
+
+	public long move(byte[] cells, int rows, int columns, MoveDirection direction, byte[] cellsOut)
+	{
+		/*
+		 * Writes the board after shifting and merging every line in the direction to cellsOut and returns the score of the merges, or
+		 * -1 if no cell moved. A cell is merged at most once per move. cells and cellsOut must not be the same array
+		 */
+
+		long score;
+		switch(direction)
+		{
+		case LEFT:		score = moveRows(cells, rows, columns, false, cellsOut);		break;
+		case RIGHT:		score = moveRows(cells, rows, columns, true, cellsOut);			break;
+		case UP:		score = moveColumns(cells, rows, columns, true, cellsOut);		break;
+		default:		score = moveColumns(cells, rows, columns, false, cellsOut);		break;
+		}
+		int totalCells = rows * columns;
+		return Arrays.equals(cells, 0, totalCells, cellsOut, 0, totalCells) ? -1 : score;
+	}
+
+	public long move(byte[] cells, int rows, int columns, MoveDirection direction, byte[] cellsOut, MergeListener mergeListener)
+	{
+		/*
+		 * The same as move() but every merge is also reported to mergeListener, nearest merge of each line first. The lines are always
+		 * moved one cell at a time. If mergeListener is null this is move()
+		 */
+
+		if(mergeListener == null)	return move(cells, rows, columns, direction, cellsOut);
+		long score = 0;
+		boolean rowsMove = direction == MoveDirection.LEFT || direction == MoveDirection.RIGHT;
+		for(int line = 0; line < (rowsMove ? rows : columns); line ++)
+		{
+			switch(direction)
+			{
+			case LEFT:		score += moveLine(cells, cellsOut, line * columns, 1, columns, mergeListener);					break;
+			case RIGHT:		score += moveLine(cells, cellsOut, line * columns + columns - 1, -1, columns, mergeListener);		break;
+			case UP:		score += moveLine(cells, cellsOut, (rows - 1) * columns + line, -columns, rows, mergeListener);		break;
+			default:		score += moveLine(cells, cellsOut, line, columns, rows, mergeListener);							break;
+			}
+		}
+		int totalCells = rows * columns;
+		return Arrays.equals(cells, 0, totalCells, cellsOut, 0, totalCells) ? -1 : score;
+	}
+
+	protected long moveRows(byte[] cells, int rows, int columns, boolean towardLastColumn, byte[] cellsOut)
+	{
+		//Moves every row toward column 0 or the last column and returns the score of the merges
+		long score = 0;
+		for(int row = 0; row < rows; row ++)
+			score += moveLine(cells, cellsOut, row * columns + (towardLastColumn ? columns - 1 : 0), towardLastColumn ? -1 : 1, columns);
+		return score;
+	}
+
+	protected long moveColumns(byte[] cells, int rows, int columns, boolean towardLastRow, byte[] cellsOut)
+	{
+		//Moves every column toward row 0 or the last row and returns the score of the merges
+		long score = 0;
+		for(int column = 0; column < columns; column ++)
+			score += moveLine(cells, cellsOut, towardLastRow ? (rows - 1) * columns + column : column, towardLastRow ? -columns : columns, rows);
+		return score;
+	}
+
+	static long moveLine(byte[] cells, byte[] cellsOut, int first, int stride, int length)
+	{
+		return moveLine(cells, cellsOut, first, stride, length, null);
+	}
+
+	static long moveLine(byte[] cells, byte[] cellsOut, int first, int stride, int length, MergeListener mergeListener)
+	{
+		/*
+		 * Moves one line whose cell closest to where it is shifted is first and whose next cells are stride apart. Returns the score of
+		 * the merges and reports them to mergeListener if it is not null. The same shift and merge as PackedBoard.move
+		 */
+
+		long score = 0;
+		int written = 0;		//The number of cells written to the front of the line
+		byte pending = 0;		//The exponent waiting to see if the next cell merges with it. 0 if nothing is waiting
+		for(int position = 0; position < length; position ++)
+		{
+			byte exponent = cells[first + position * stride];
+			if(exponent == 0)				continue;
+			if(pending == 0)				pending = exponent;
+			else if(pending == exponent)
+			{
+				int cell = first + written ++ * stride;
+				cellsOut[cell] = (byte)(exponent + 1);
+				score += 1L << (exponent + 1);
+				if(mergeListener != null)	mergeListener.merged(cell, exponent + 1);
+				pending = 0;
+			}
+			else
+			{
+				cellsOut[first + written ++ * stride] = pending;
+				pending = exponent;
+			}
+		}
+		if(pending != 0)	cellsOut[first + written ++ * stride] = pending;
+		for(; written < length; written ++)	cellsOut[first + written * stride] = 0;
+		return score;
+	}
+}
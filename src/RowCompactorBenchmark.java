@@ -0,0 +1,95 @@
+/*
+ * Compares how fast RowCompactor and VectorRowCompactor move boards of 4 rows and growing widths. Every move of the vector compactor is
+ * checked against the scalar one first, so a faster result that is wrong is never printed.
+ * Usage: java --add-modules jdk.incubator.vector RowCompactorBenchmark [rows] [boards] [seconds]
+ * The default is 4 rows, 1024 random boards per width and 1 second of moves per width, direction and compactor. The boards are half
+ * empty with exponents from 1 to 11 and each one has a run of equal cells so every move has merges to find.
+ * LEFT and RIGHT are moved one cell at a time by both compactors so they should measure about the same. UP and DOWN only use vectors
+ * once the board is at least as wide as a vector.
+ */
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class RowCompactorBenchmark
+{
+	public static final int[] WIDTHS = {4, 8, 16, 32, 64, 128, 256};
+
+	public static void main(String[] args)
+	{
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int totalBoards = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+
+		RowCompactor scalar = new RowCompactor();
+		RowCompactor vector = RowCompactor.getInstance();
+		if(vector.getClass() == RowCompactor.class)
+			System.out.println("The Vector API is not available (start the JVM with --add-modules jdk.incubator.vector). Only the scalar compactor is measured");
+
+		System.out.printf("%-9s %-6s %14s %14s %8s%n", "Board", "Move", "scalar ns", vector.getName() + " ns", "Speedup");
+		for(int columns : WIDTHS)
+		{
+			byte[][] boards = createBoards(rows, columns, totalBoards, new SplittableRandom(columns));
+			for(MoveDirection direction : MoveDirection.values())
+			{
+				check(scalar, vector, boards, rows, columns, direction);
+				double scalarNanos = measure(scalar, boards, rows, columns, direction, seconds);
+				double vectorNanos = measure(vector, boards, rows, columns, direction, seconds);
+				System.out.printf("%-9s %-6s %14.1f %14.1f %7.2fx%n", rows + "x" + columns, direction, scalarNanos, vectorNanos, scalarNanos / vectorNanos);
+			}
+		}
+	}
+
+	private static byte[][] createBoards(int rows, int columns, int totalBoards, SplittableRandom random)
+	{
+		//Creates boards that are about half empty with a run of 4 equal cells somewhere in each
+		byte[][] boards = new byte[totalBoards][rows * columns];
+		for(byte[] board : boards)
+		{
+			for(int cell = 0; cell < board.length; cell ++)
+				if(random.nextBoolean())	board[cell] = (byte)random.nextInt(1, 12);
+			int run = random.nextInt(Math.max(1, board.length - 3));
+			for(int cell = run; cell < Math.min(run + 4, board.length); cell ++)	board[cell] = 3;
+		}
+		return boards;
+	}
+
+	private static void check(RowCompactor expected, RowCompactor actual, byte[][] boards, int rows, int columns, MoveDirection direction)
+	{
+		//Throws an IllegalStateException if the compactors give a different board or score for any board
+		byte[] expectedOut = new byte[rows * columns];
+		byte[] actualOut = new byte[rows * columns];
+		for(byte[] board : boards)
+		{
+			long expectedScore = expected.move(board, rows, columns, direction, expectedOut);
+			long actualScore = actual.move(board, rows, columns, direction, actualOut);
+			if(expectedScore != actualScore || !Arrays.equals(expectedOut, actualOut))
+				throw new IllegalStateException(actual.getName() + " moved a " + rows + "x" + columns + " board " + direction + " differently");
+		}
+	}
+
+	private static long checksum;		//Sum of every measured score, so the JIT can not drop the moves
+
+	private static double measure(RowCompactor compactor, byte[][] boards, int rows, int columns, MoveDirection direction, double seconds)
+	{
+		//Returns the average nanoseconds per move. The first half of the time is the JIT warm up and is not counted
+		byte[] out = new byte[rows * columns];
+		moveFor(compactor, boards, rows, columns, direction, seconds / 2, out);
+		long startNanos = System.nanoTime();
+		long moves = moveFor(compactor, boards, rows, columns, direction, seconds / 2, out);
+		return (double)(System.nanoTime() - startNanos) / moves;
+	}
+
+	private static long moveFor(RowCompactor compactor, byte[][] boards, int rows, int columns, MoveDirection direction, double seconds, byte[] out)
+	{
+		//Moves the boards over and over for the time and returns the number of moves
+		long moves = 0;
+		long endNanos = System.nanoTime() + (long)(seconds * 1e9);
+		while(System.nanoTime() < endNanos)
+			for(byte[] board : boards)
+			{
+				checksum += compactor.move(board, rows, columns, direction, out);
+				moves ++;
+			}
+		return moves;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * A window that lists the saved games in the saves directory. The list comes from a SaveIndex so it is shown as soon as the index file
+ * is read, without reading a single save. The directory is then scanned for saves that changed since the index was written, and the
+ * list is kept up to date while the window exists. Rows can be sorted by any column and show a thumbnail of the board drawn with the
+ * same colors as the game window. Double clicking a row or pressing Enter opens the save in the window that opened the browser.
+ */
+import java.io.File;
+import java.text.DateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+public class SaveBrowser extends Stage
+{
+	public static final double THUMBNAIL_SIDE = 48;		//The width and height of a thumbnail in pixels
+
+	public SaveBrowser(SaveIndex saveIndex)
+	{
+		/*
+		 * Creates the window for the index. The index is read and the directory is scanned and watched on a background thread so the
+		 * window never waits for the disk
+		 */
+
+		this.saveIndex = saveIndex;
+		setTitle("Saved Games - " + saveIndex.getDirectory().getAbsolutePath());
+
+		//Create the columns. Every column sorts by the value it shows
+		TableColumn<SaveIndex.SaveInfo, SaveIndex.SaveInfo> thumbnailColumn = new TableColumn<>("Board");
+		thumbnailColumn.setCellValueFactory(row->new ReadOnlyObjectWrapper<>(row.getValue()));
+		thumbnailColumn.setCellFactory(column->new ThumbnailCell());
+		thumbnailColumn.setSortable(false);
+		thumbnailColumn.setPrefWidth(THUMBNAIL_SIDE + 12);
+		TableColumn<SaveIndex.SaveInfo, Integer> sizeColumn = createColumn("Size", info->info.getRows() * info.getColumns());
+		sizeColumn.setCellFactory(column->new TableCell<SaveIndex.SaveInfo, Integer>()
+		{
+			@Override
+			protected void updateItem(Integer cells, boolean empty)
+			{
+				super.updateItem(cells, empty);
+				SaveIndex.SaveInfo info = (empty || getTableRow() == null) ? null : getTableRow().getItem();
+				setText(info == null ? null : info.getRows() + "x" + info.getColumns());
+			}
+		});
+		TableColumn<SaveIndex.SaveInfo, Long> savedColumn = createColumn("Saved", SaveIndex.SaveInfo::getModifiedTime);
+		savedColumn.setCellFactory(column->new TableCell<SaveIndex.SaveInfo, Long>()
+		{
+			@Override
+			protected void updateItem(Long modifiedTime, boolean empty)
+			{
+				super.updateItem(modifiedTime, empty);
+				setText(empty || modifiedTime == null ? null : DATE_FORMAT.format(new Date(modifiedTime)));
+			}
+		});
+
+		savesTable.getColumns().add(thumbnailColumn);
+		savesTable.getColumns().add(createColumn("File", SaveIndex.SaveInfo::getFileName));
+		savesTable.getColumns().add(sizeColumn);
+		savesTable.getColumns().add(createColumn("Score", SaveIndex.SaveInfo::getScore));
+		savesTable.getColumns().add(createColumn("Moves", SaveIndex.SaveInfo::getMoveCount));
+		savesTable.getColumns().add(createColumn("Max Tile", SaveIndex.SaveInfo::getMaxTile));
+		savesTable.getColumns().add(savedColumn);
+		savesTable.setFixedCellSize(THUMBNAIL_SIDE + 8);		//Every row is the same height so scrolling never measures rows
+		savesTable.setPlaceholder(new Label("Looking for saved games..."));
+
+		//Open the selected save on a double click or Enter
+		savesTable.setOnMouseClicked(e->
+		{
+			if(e.getClickCount() == 2)	openSelected();
+		});
+		savesTable.setOnKeyPressed(e->
+		{
+			if(e.getCode() == KeyCode.ENTER)	openSelected();
+		});
+
+		setScene(new Scene(savesTable, 720, 480));
+
+		//Show what the index file knows right away and then bring it up to date with the directory
+		Thread indexThread = new Thread(()->
+		{
+			saveIndex.load();
+			Platform.runLater(this::refresh);
+			saveIndex.scan();
+			Platform.runLater(()->
+			{
+				refresh();
+				savesTable.setPlaceholder(new Label("There are no saved games in " + saveIndex.getDirectory().getAbsolutePath()));
+			});
+			saveIndex.watch(()->Platform.runLater(this::refresh));
+		},"2048 save index loader");
+		indexThread.setDaemon(true);
+		indexThread.start();
+	}
+
+	public void showFor(Consumer<File> openHandler)
+	{
+		//Shows the window. A save the user opens is given to openHandler until showFor is called again
+		this.openHandler = openHandler;
+		show();
+		toFront();
+	}
+
+	private static final DateFormat DATE_FORMAT = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+
+	private final SaveIndex saveIndex;									//The index of the saves that are listed
+	private final ObservableList<SaveIndex.SaveInfo> saves = FXCollections.observableArrayList();	//Rows of the table
+	private final TableView<SaveIndex.SaveInfo> savesTable = new TableView<>(saves);
+	private Consumer<File> openHandler;									//Opens a save the user picked
+
+	private static <T extends Comparable<T>> TableColumn<SaveIndex.SaveInfo, T> createColumn(String title, Function<SaveIndex.SaveInfo, T> value)
+	{
+		//Creates a column that shows and sorts by a value of the save
+		TableColumn<SaveIndex.SaveInfo, T> column = new TableColumn<>(title);
+		column.setCellValueFactory(row->new ReadOnlyObjectWrapper<>(value.apply(row.getValue())));
+		column.setComparator(Comparator.naturalOrder());
+		return column;
+	}
+
+	private void refresh()
+	{
+		//Replaces the rows with the saves in the index. The sort order the user picked is kept
+		saves.setAll(saveIndex.getSaves());
+		savesTable.sort();
+	}
+
+	private void openSelected()
+	{
+		//Opens the selected save and hides the browser
+		SaveIndex.SaveInfo selected = savesTable.getSelectionModel().getSelectedItem();
+		if(selected == null || openHandler == null)	return;
+		hide();
+		openHandler.accept(new File(saveIndex.getDirectory(), selected.getFileName()));
+	}
+
+	private static class ThumbnailCell extends TableCell<SaveIndex.SaveInfo, SaveIndex.SaveInfo>
+	{
+		/*
+		 * Draws the thumbnail of a save on a canvas. The canvas belongs to the cell and is drawn again when the table reuses the cell
+		 * for another row, so only the rows that can be seen are ever drawn
+		 */
+
+		private final Canvas thumbnail = new Canvas(THUMBNAIL_SIDE, THUMBNAIL_SIDE);
+
+		@Override
+		protected void updateItem(SaveIndex.SaveInfo info, boolean empty)
+		{
+			super.updateItem(info, empty);
+			if(empty || info == null)
+			{
+				setGraphic(null);
+				return;
+			}
+
+			GraphicsContext graphics = thumbnail.getGraphicsContext2D();
+			graphics.setFill(Color.GRAY);
+			graphics.fillRect(0, 0, THUMBNAIL_SIDE, THUMBNAIL_SIDE);
+			double pitch = THUMBNAIL_SIDE / Math.max(info.getThumbnailRows(), info.getThumbnailColumns());
+			double gap = Math.max(1, pitch / 10);
+			for(int row = 0; row < info.getThumbnailRows(); row ++)
+				for(int column = 0; column < info.getThumbnailColumns(); column ++)
+				{
+					int exponent = info.getThumbnailExponent(row, column);
+					graphics.setFill(Game2048GUI.getCellColor(exponent == 0 ? 0 : 1 << exponent));
+					double y = (info.getThumbnailRows() - 1 - row) * pitch;	//Row 0 is the bottom row
+					graphics.fillRect(column * pitch + gap / 2, y + gap / 2, pitch - gap, pitch - gap);
+				}
+			setGraphic(thumbnail);
+		}
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * An index of the saved games in a directory. A saved game is a serialized Twenty48Game with no header, so learning anything about it
+ * means reading the whole game. The index reads every save once and keeps what the save browser shows (board size, score, move count,
+ * largest cell and a small thumbnail of the board) in an index file in the same directory. A save is only read again when its size or
+ * modified time changes, so listing a directory that was indexed before only reads the index file.
+ * watch() keeps the index up to date with a WatchService. Only the saves that were created, changed or deleted are read again.
+ * Index file layout (big endian, DataOutputStream):
+ *		int magic ("2048" index), int version, int number of saves
+ *		for every save: UTF file name, long file size, long modified time, int rows, int columns, int score, int move count,
+ *		int largest cell, byte thumbnail rows, byte thumbnail columns, thumbnail rows * columns bytes of cell exponents
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import twentyFortyEight.Twenty48Game;
+
+public class SaveIndex implements Closeable
+{
+	static final int MAGIC = 0x32303438;			//"2048"
+	static final int VERSION = 1;
+	public static final String INDEX_FILE_NAME = "SaveIndex.idx";
+	public static final int MAX_THUMBNAIL_SIDE = 16;	//Larger boards are shrunk to at most this many cells per side in the thumbnail
+
+	public static File defaultDirectory()
+	{
+		//Returns the directory saves are kept in. Set with the system property twenty48.savesDirectory ("saves" by default)
+		return new File(System.getProperty("twenty48.savesDirectory", "saves"));
+	}
+
+	public SaveIndex(File directory)
+	{
+		//Creates an index of the saves in the directory. Nothing is read until load() or scan() is called
+		this.directory = directory;
+		this.indexFile = new File(directory, INDEX_FILE_NAME);
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	public List<SaveInfo> getSaves()
+	{
+		//Returns every indexed save in no particular order. The list is a copy so it can be sorted
+		return new ArrayList<>(saves.values());
+	}
+
+	public void load()
+	{
+		/*
+		 * Reads the index file if there is one. Saves that changed since the index was written are found by the next scan().
+		 * A missing or corrupted index file is ignored and rebuilt by the next scan()
+		 */
+
+		if(!indexFile.exists())	return;
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16)))
+		{
+			if(input.readInt() != MAGIC || input.readInt() != VERSION)	return;
+			int totalSaves = input.readInt();
+			for(int save = 0; save < totalSaves; save ++)
+			{
+				SaveInfo info = SaveInfo.read(input);
+				saves.put(info.getFileName(), info);
+			}
+		}
+		catch(IOException e)
+		{
+			saves.clear();			//Start over. The next scan reads every save again
+		}
+	}
+
+	public boolean scan()
+	{
+		/*
+		 * Brings the index up to date with the directory. Saves that are new or whose size or modified time changed are read in
+		 * parallel and saves that are gone are removed. The index file is written if anything changed. Returns true if anything changed
+		 */
+
+		List<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory.toPath(), "*.dat"))
+		{
+			for(Path file : directoryStream)	files.add(file);
+		}
+		catch(IOException e)
+		{
+			return false;		//The directory does not exist yet
+		}
+
+		boolean changed = saves.keySet().retainAll(files.stream().map(file->file.getFileName().toString()).collect(Collectors.toSet()));
+		long updated = files.parallelStream().filter(this::update).count();
+		if(changed || updated > 0)	writeIndex();
+		return changed || updated > 0;
+	}
+
+	public void watch(Runnable changeHandler)
+	{
+		/*
+		 * Starts a background thread that updates the index whenever a save in the directory is created, changed or deleted and then
+		 * calls changeHandler on that thread. Events that arrive close together are handled together so a burst of saves only writes
+		 * the index once. Does nothing if the directory can not be watched
+		 */
+
+		if(watchThread != null)	return;
+		try
+		{
+			directory.mkdirs();
+			watchService = FileSystems.getDefault().newWatchService();
+			directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
+		catch(IOException e)
+		{
+			return;
+		}
+
+		watchThread = new Thread(()->
+		{
+			try
+			{
+				while(true)
+				{
+					//Wait for a change and then gather every change made soon after it
+					boolean changed = handleEvents(watchService.take());
+					WatchKey key;
+					while((key = watchService.poll(WATCH_BATCH_MILLIS, TimeUnit.MILLISECONDS)) != null)
+						changed |= handleEvents(key);
+					if(changed)
+					{
+						writeIndex();
+						changeHandler.run();
+					}
+				}
+			}
+			catch(InterruptedException | ClosedWatchServiceException e)
+			{
+				//The index was closed
+			}
+		},"2048 save index watcher");
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		//Stops watching the directory
+		if(watchService != null)	watchService.close();
+	}
+
+	public static final class SaveInfo
+	{
+		/*
+		 * What the index knows about one save. The thumbnail holds the largest exponent of each block of cells when the board is
+		 * larger than MAX_THUMBNAIL_SIDE, row 0 being the bottom row like a Twenty48Game
+		 */
+
+		public int getRows()					{ return rows; }
+		public int getColumns()					{ return columns; }
+		public int getScore()					{ return score; }
+		public int getMoveCount()				{ return moveCount; }
+		public int getMaxTile()					{ return maxTile; }
+		public long getFileSize()				{ return fileSize; }
+		public long getModifiedTime()			{ return modifiedTime; }
+		public String getFileName()				{ return fileName; }
+		public int getThumbnailRows()			{ return thumbnailRows; }
+		public int getThumbnailColumns()		{ return thumbnailColumns; }
+
+		public int getThumbnailExponent(int row, int column)
+		{
+			//Returns the exponent of a thumbnail cell (0 = empty, 1 = 2, 2 = 4 ...)
+			return thumbnail[row * thumbnailColumns + column];
+		}
+
+		private final String fileName;
+		private final long fileSize;
+		private final long modifiedTime;
+		private final int rows;
+		private final int columns;
+		private final int score;
+		private final int moveCount;
+		private final int maxTile;
+		private final int thumbnailRows;
+		private final int thumbnailColumns;
+		private final byte[] thumbnail;
+
+		private SaveInfo(String fileName, long fileSize, long modifiedTime, int rows, int columns, int score, int moveCount, int maxTile,
+				int thumbnailRows, int thumbnailColumns, byte[] thumbnail)
+		{
+			this.fileName = fileName;
+			this.fileSize = fileSize;
+			this.modifiedTime = modifiedTime;
+			this.rows = rows;
+			this.columns = columns;
+			this.score = score;
+			this.moveCount = moveCount;
+			this.maxTile = maxTile;
+			this.thumbnailRows = thumbnailRows;
+			this.thumbnailColumns = thumbnailColumns;
+			this.thumbnail = thumbnail;
+		}
+
+		private static SaveInfo fromGame(String fileName, long fileSize, long modifiedTime, Twenty48Game game)
+		{
+			//Reads what the index keeps from a game that was loaded from the save
+
+			int thumbnailRows = Math.min(game.TOTAL_ROWS, MAX_THUMBNAIL_SIDE);
+			int thumbnailColumns = Math.min(game.TOTAL_COLUMNS, MAX_THUMBNAIL_SIDE);
+			byte[] thumbnail = new byte[thumbnailRows * thumbnailColumns];
+			int maxTile = 0;
+			for(int row = 0; row < game.TOTAL_ROWS; row ++)
+				for(int column = 0; column < game.TOTAL_COLUMNS; column ++)
+				{
+					int value = game.getCellValue(row, column);
+					if(value == 0)	continue;
+					maxTile = Math.max(maxTile, value);
+					int thumbnailCell = (row * thumbnailRows / game.TOTAL_ROWS) * thumbnailColumns + column * thumbnailColumns / game.TOTAL_COLUMNS;
+					thumbnail[thumbnailCell] = (byte)Math.max(thumbnail[thumbnailCell], Integer.numberOfTrailingZeros(value));
+				}
+			return new SaveInfo(fileName, fileSize, modifiedTime, game.TOTAL_ROWS, game.TOTAL_COLUMNS, game.getScore(),
+					game.getMoveCount(), maxTile, thumbnailRows, thumbnailColumns, thumbnail);
+		}
+
+		private static SaveInfo read(DataInputStream input) throws IOException
+		{
+			String fileName = input.readUTF();
+			long fileSize = input.readLong();
+			long modifiedTime = input.readLong();
+			int rows = input.readInt();
+			int columns = input.readInt();
+			int score = input.readInt();
+			int moveCount = input.readInt();
+			int maxTile = input.readInt();
+			int thumbnailRows = input.readByte();
+			int thumbnailColumns = input.readByte();
+			byte[] thumbnail = new byte[thumbnailRows * thumbnailColumns];
+			input.readFully(thumbnail);
+			return new SaveInfo(fileName, fileSize, modifiedTime, rows, columns, score, moveCount, maxTile, thumbnailRows, thumbnailColumns, thumbnail);
+		}
+
+		private void write(DataOutputStream output) throws IOException
+		{
+			output.writeUTF(fileName);
+			output.writeLong(fileSize);
+			output.writeLong(modifiedTime);
+			output.writeInt(rows);
+			output.writeInt(columns);
+			output.writeInt(score);
+			output.writeInt(moveCount);
+			output.writeInt(maxTile);
+			output.writeByte(thumbnailRows);
+			output.writeByte(thumbnailColumns);
+			output.write(thumbnail);
+		}
+	}
+
+	private static final long WATCH_BATCH_MILLIS = 200;		//How long to wait for more changes before writing the index
+
+	private final File directory;							//The directory of the saves
+	private final File indexFile;							//The index file in the directory
+	private final Map<String, SaveInfo> saves = new ConcurrentHashMap<>();	//Every indexed save by file name
+	private WatchService watchService;						//Watches the directory once watch() is called
+	private Thread watchThread;								//Handles the changes found by watchService
+
+	private boolean update(Path saveFile)
+	{
+		/*
+		 * Reads the save again if it is not indexed or its size or modified time changed. A save that is gone or can not be read is
+		 * removed from the index. Returns true if the index changed
+		 */
+
+		String fileName = saveFile.getFileName().toString();
+		try
+		{
+			//Read the size and modified time with one call. A listing of thousands of saves is mostly these calls
+			BasicFileAttributes attributes = Files.readAttributes(saveFile, BasicFileAttributes.class);
+			long fileSize = attributes.size();
+			long modifiedTime = attributes.lastModifiedTime().toMillis();
+			SaveInfo indexed = saves.get(fileName);
+			if(!attributes.isRegularFile())	return saves.remove(fileName) != null;
+			if(indexed != null && indexed.fileSize == fileSize && indexed.modifiedTime == modifiedTime)	return false;
+
+			try(ObjectInputStream objectStream = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(saveFile))))
+			{
+				saves.put(fileName, SaveInfo.fromGame(fileName, fileSize, modifiedTime, new Twenty48Game(objectStream)));
+				return true;
+			}
+		}
+		catch(Exception e)
+		{
+			//Gone, not a saved game or still being written. A save that is still being written is read again when it is modified
+			return saves.remove(fileName) != null;
+		}
+	}
+
+	private boolean handleEvents(WatchKey key)
+	{
+		//Updates the index for every event of the key. A lost event means anything may have changed so the whole directory is scanned
+
+		boolean changed = false;
+		for(WatchEvent<?> event : key.pollEvents())
+		{
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				changed |= scan();
+				continue;
+			}
+			Path saveFile = directory.toPath().resolve((Path)event.context());
+			if(saveFile.getFileName().toString().endsWith(".dat"))	changed |= update(saveFile);
+		}
+		key.reset();
+		return changed;
+	}
+
+	private synchronized void writeIndex()
+	{
+		/*
+		 * Writes the index file. The file is written next to the old one and renamed over it so a crash never leaves a half written index.
+		 * The index is only a cache of the saves so an error is ignored and the saves are read again next time
+		 */
+
+		File newIndexFile = new File(directory, INDEX_FILE_NAME + ".tmp");
+		List<SaveInfo> indexed = getSaves();
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newIndexFile), 1 << 16)))
+		{
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(indexed.size());
+			for(SaveInfo info : indexed)	info.write(output);
+		}
+		catch(IOException e)
+		{
+			newIndexFile.delete();
+			return;
+		}
+		if(!newIndexFile.renameTo(indexFile))
+		{
+			indexFile.delete();
+			newIndexFile.renameTo(indexFile);
+		}
+	}
+}
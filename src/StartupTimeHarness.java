@@ -0,0 +1,95 @@
+/*
+ * Measures how long it takes a Game2048GUI to reach an interactive board. The time is measured from the start of the constructor
+ * to the first frame rendered in the game window. The first run is the cold start of the JVM. Every run after that reuses the
+ * graphics that were prepared by the first run.
+ * Usage: java StartupTimeHarness [rows] [columns] [runs]
+ * The default is a 4x4 board opened 10 times. Every run is printed along with whether it met the 300 ms budget
+ */
+import java.util.ArrayList;
+import java.util.List;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+public class StartupTimeHarness extends Application
+{
+	public static void main(String[] args)
+	{
+		launch(args);
+	}
+
+	private static final long BUDGET_NANOS = 300_000_000L;	//A kiosk launch must show an interactive board in under 300 ms
+
+	private int rows = 4;						//The number of rows of the measured board
+	private int columns = 4;					//The number of columns of the measured board
+	private int totalRuns = 10;					//How many times the board is opened
+	private List<Long> runNanos = new ArrayList<>();	//The startup time of every finished run
+
+	@Override
+	public void start(Stage primaryStage) throws Exception
+	{
+		//Read the optional board size and run count from the command line
+		List<String> arguments = getParameters().getUnnamed();
+		if(arguments.size() > 0)	rows = Integer.parseInt(arguments.get(0));
+		if(arguments.size() > 1)	columns = Integer.parseInt(arguments.get(1));
+		if(arguments.size() > 2)	totalRuns = Integer.parseInt(arguments.get(2));
+
+		Platform.setImplicitExit(false);		//Closing the measured windows should not end the harness
+		runNext();
+	}
+
+	private void runNext() throws Exception
+	{
+		/*
+		 * Opens a new game window and waits for its first frame. Once the frame is rendered the window is closed and the next run
+		 * is started on a later pulse so the previous window is fully gone
+		 */
+
+		if(runNanos.size() == totalRuns)
+		{
+			printReport();
+			Platform.exit();
+			return;
+		}
+
+		Game2048GUI measuredGame = new Game2048GUI(rows, columns);
+		measuredGame.setOnFirstFrame(()->
+		{
+			runNanos.add(measuredGame.getStartupNanos());
+
+			//Hide every window that the game opened without firing the close request (that would show the end game dialog)
+			for(Window openWindow : new ArrayList<>(Window.getWindows()))
+				openWindow.hide();
+
+			Platform.runLater(()->
+			{
+				try
+				{
+					runNext();
+				}
+				catch(Exception runException)
+				{
+					System.err.println("The run failed: " + runException);
+					Platform.exit();
+				}
+			});
+		});
+	}
+
+	private void printReport()
+	{
+		//Prints every run followed by the cold start time and the best warm start time
+
+		System.out.println("Startup time of a " + rows + "x" + columns + " board (constructor to first frame)");
+		long bestWarmNanos = Long.MAX_VALUE;
+		for(int run = 0; run < runNanos.size(); run ++)
+		{
+			long nanos = runNanos.get(run);
+			System.out.printf("\tRun %d: %.1f ms%s%n", run + 1, nanos / 1e6, nanos < BUDGET_NANOS ? "" : " (over budget)");
+			if(run > 0 && nanos < bestWarmNanos)	bestWarmNanos = nanos;
+		}
+		System.out.printf("Cold start: %.1f ms%n", runNanos.get(0) / 1e6);
+		if(bestWarmNanos != Long.MAX_VALUE)	System.out.printf("Best warm start: %.1f ms%n", bestWarmNanos / 1e6);
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Read only access to a perfect play tablebase written by TablebaseGenerator. The file is memory mapped so a lookup never reads the
+ * whole file and never allocates. Lookups are a hash probe into the mapped file so they take the same time for any board.
+ * Only the canonical form of every board is stored (PackedBoard.findCanonicalSymmetry), so a square board needs about an eighth of the
+ * slots. A lookup turns the board into its canonical form first and turns the stored best move back into a move on the board.
+ * File layout (big endian):
+ *		int magic ("2048" tablebase), int version, int rows, int columns, long capacity, long entry count
+ *		capacity slots of 16 bytes: long canonical board (0 = empty slot), float expected score, int best move ordinal on the canonical
+ *		board (-1 = no move possible)
+ * A slot holds the expected score of the rest of the game when playing perfectly from a board right after a cell was spawned. A board is
+ * looked up from slot firstSlot(board, capacity) onwards until the board or an empty slot is found.
+ */
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class Tablebase implements Closeable
+{
+	static final int MAGIC = 0x32303438;			//"2048"
+	static final int VERSION = 2;
+	static final int HEADER_BYTES = 32;
+	static final int SLOT_BYTES = 16;
+	static final int SLOTS_PER_CHUNK = 1 << 26;		//A mapped buffer can not be larger than 2GB so the slots are mapped 1GB at a time
+
+	public static File fileFor(int rows, int columns)
+	{
+		//Returns the file a tablebase for the board size is expected in. The file is in the working directory like "HighScore.dat"
+		return new File("Tablebase" + rows + "x" + columns + ".tb");
+	}
+
+	public static Tablebase open(File tablebaseFile) throws IOException
+	{
+		//Maps the tablebase file into memory. Throws an IOException if the file is missing or is not a tablebase
+		return new Tablebase(tablebaseFile, false);
+	}
+
+	public final int TOTAL_ROWS;			//The number of rows of every board in the tablebase
+	public final int TOTAL_COLUMNS;			//The number of columns of every board in the tablebase
+
+	public long getEntryCount()
+	{
+		//Returns the number of boards in the tablebase
+		return entryCount;
+	}
+
+	public boolean contains(long board)
+	{
+		//Returns true if the board is in the tablebase
+		return findSlot(canonical(board, PackedBoard.findCanonicalSymmetry(board, TOTAL_ROWS, TOTAL_COLUMNS))) >= 0;
+	}
+
+	public double getExpectedScore(long board)
+	{
+		//Returns the expected score of the rest of the game with perfect play or NaN if the board is not in the tablebase
+		long slot = findSlot(canonical(board, PackedBoard.findCanonicalSymmetry(board, TOTAL_ROWS, TOTAL_COLUMNS)));
+		return slot < 0 ? Double.NaN : chunkFor(slot).getFloat(offsetOf(slot) + 8);
+	}
+
+	public MoveDirection getBestMove(long board)
+	{
+		//Returns the move that gives the highest expected score or null if the board is not in the tablebase or the game is over
+		int symmetry = PackedBoard.findCanonicalSymmetry(board, TOTAL_ROWS, TOTAL_COLUMNS);
+		long slot = findSlot(canonical(board, symmetry));
+		if(slot < 0)	return null;
+		MoveDirection canonicalMove = MoveDirection.fromOrdinal(chunkFor(slot).getInt(offsetOf(slot) + 12));
+		return canonicalMove == null ? null : PackedBoard.untransform(canonicalMove, symmetry);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		//Closes the file. The mapped buffers are released when they are garbage collected
+		channel.close();
+	}
+
+	private final RandomAccessFile file;			//The open tablebase file
+	private final FileChannel channel;				//Channel of the file used to map the slots
+	private final MappedByteBuffer header;			//The header of the file
+	private final MappedByteBuffer[] chunks;		//The slots of the file, SLOTS_PER_CHUNK slots per buffer
+	private final long capacity;					//Number of slots
+	private long entryCount;						//Number of slots that hold a board
+
+	Tablebase(File tablebaseFile, int rows, int columns, long capacity) throws IOException
+	{
+		/*
+		 * Creates a new empty tablebase file for the generator. Every slot starts empty. Canonical boards are added with put()
+		 */
+
+		this.TOTAL_ROWS = rows;
+		this.TOTAL_COLUMNS = columns;
+		this.capacity = capacity;
+		file = new RandomAccessFile(tablebaseFile, "rw");
+		file.setLength(0);									//Zero every slot of an old file
+		file.setLength(HEADER_BYTES + capacity * SLOT_BYTES);
+		channel = file.getChannel();
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		chunks = mapChunks(FileChannel.MapMode.READ_WRITE);
+		header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, columns).putLong(16, capacity).putLong(24, 0);
+	}
+
+	private Tablebase(File tablebaseFile, boolean writable) throws IOException
+	{
+		//Opens an existing tablebase file and checks the header
+
+		file = new RandomAccessFile(tablebaseFile, writable ? "rw" : "r");
+		channel = file.getChannel();
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+		try
+		{
+			if(channel.size() < HEADER_BYTES)	throw new IOException(tablebaseFile + " is not a 2048 tablebase");
+			header = channel.map(mode, 0, HEADER_BYTES);
+			if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException(tablebaseFile + " is not a version " + VERSION + " 2048 tablebase");
+			TOTAL_ROWS = header.getInt(8);
+			TOTAL_COLUMNS = header.getInt(12);
+			capacity = header.getLong(16);
+			entryCount = header.getLong(24);
+			if(capacity < 1 || channel.size() < HEADER_BYTES + capacity * SLOT_BYTES)
+				throw new IOException(tablebaseFile + " is truncated or corrupted");
+			chunks = mapChunks(mode);
+		}
+		catch(IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	void put(long board, float expectedScore, MoveDirection bestMove)
+	{
+		/*
+		 * Adds a canonical board to a tablebase that is being generated. Boards are never added twice. Not thread safe
+		 */
+
+		long slot = firstSlot(board, capacity);
+		while(chunkFor(slot).getLong(offsetOf(slot)) != 0)	slot = slot + 1 == capacity ? 0 : slot + 1;
+		MappedByteBuffer chunk = chunkFor(slot);
+		int offset = offsetOf(slot);
+		chunk.putLong(offset, board);
+		chunk.putFloat(offset + 8, expectedScore);
+		chunk.putInt(offset + 12, bestMove == null ? -1 : bestMove.ordinal());
+		header.putLong(24, ++ entryCount);
+	}
+
+	void flush()
+	{
+		//Writes every mapped change to the file
+		header.force();
+		for(MappedByteBuffer chunk : chunks)	chunk.force();
+	}
+
+	private long findSlot(long board)
+	{
+		//Returns the slot holding the canonical board or -1 if it is not in the tablebase. The empty board is never stored
+
+		if(board == 0)	return -1;
+		long slot = firstSlot(board, capacity);
+		while(true)
+		{
+			long stored = chunkFor(slot).getLong(offsetOf(slot));
+			if(stored == board)	return slot;
+			if(stored == 0)		return -1;
+			slot = slot + 1 == capacity ? 0 : slot + 1;
+		}
+	}
+
+	static long firstSlot(long board, long capacity)
+	{
+		//Returns the slot a lookup of the canonical board starts at. The capacity does not have to be a power of 2
+		return Long.remainderUnsigned(PackedBoard.hash(board), capacity);
+	}
+
+	private long canonical(long board, int symmetry)
+	{
+		return PackedBoard.transform(board, TOTAL_ROWS, TOTAL_COLUMNS, symmetry);
+	}
+
+	private MappedByteBuffer[] mapChunks(FileChannel.MapMode mode) throws IOException
+	{
+		//Maps the slots of the file one chunk at a time
+		int totalChunks = (int)((capacity + SLOTS_PER_CHUNK - 1) / SLOTS_PER_CHUNK);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[totalChunks];
+		for(int chunk = 0; chunk < totalChunks; chunk ++)
+		{
+			long firstSlot = (long)chunk * SLOTS_PER_CHUNK;
+			long slotsInChunk = Math.min(SLOTS_PER_CHUNK, capacity - firstSlot);
+			mapped[chunk] = channel.map(mode, HEADER_BYTES + firstSlot * SLOT_BYTES, slotsInChunk * SLOT_BYTES);
+		}
+		return mapped;
+	}
+
+	private MappedByteBuffer chunkFor(long slot)
+	{
+		return chunks[(int)(slot / SLOTS_PER_CHUNK)];
+	}
+
+	private static int offsetOf(long slot)
+	{
+		return (int)(slot % SLOTS_PER_CHUNK) * SLOT_BYTES;
+	}
+}
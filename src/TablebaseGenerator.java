@@ -0,0 +1,389 @@
+/*
+ * Solves small boards of 2048 exactly and writes the result to a tablebase file that Tablebase memory maps.
+ * Usage: java TablebaseGenerator rows columns [outputFile]
+ * The output file defaults to Tablebase.fileFor(rows, columns) so the game window finds it. Boards of at most 9 cells are supported
+ * (2x2, 2x3, 3x3 ...). Larger boards have too many reachable states to solve.
+ *
+ * The sum of the cell values never changes during a move and grows by 2 or 4 with every spawn. So every reachable board belongs to
+ * exactly one layer (its sum) and a board can only lead to boards in a higher layer. A board has the same expected score as every
+ * rotation and reflection of it, so only canonical boards (PackedBoard.findCanonicalSymmetry) are collected and solved, which is about
+ * an eighth of the boards on a square board and a quarter on other boards. The generator works in three steps:
+ *		1. Forward: starting from every possible opening board, the boards reachable from each layer are collected into the layers
+ *		   above it. Each layer is a sorted array of packed boards without duplicates. The successors are found EXPAND_CHUNK_BOARDS
+ *		   boards at a time and every chunk is sorted and merged into its layer right away, so only the next two layers and one chunk of
+ *		   successors are ever in memory. A finished layer is written to a temporary file.
+ *		2. Retrograde: starting from the highest layer, the expected score of every board is calculated from the two layers above it,
+ *		   which are already solved. The boards of a layer are solved in parallel on every core and only the boards and scores of the
+ *		   two layers above are kept. Every solved board is appended to the temporary file of the range of tablebase slots it hashes to
+ *		   (SLOTS_PER_BUCKET slots per file).
+ *		3. Every slot range is read back, sorted by slot and put in the tablebase, so the tablebase file is filled from start to end.
+ *		   Putting the boards in the order the layers are solved would write to random places of a file much larger than memory.
+ * 3x3 reaches 48,713,519 canonical boards and takes about 10 minutes on one core with -Xmx2g and 3GB of free disk space for the
+ * temporary files and the 1.1GB tablebase.
+ * The expected score of a board is the best over every move of the move score plus the average over every empty cell of the spawned
+ * board's expected score (a 2 is spawned 90% of the time and a 4 10% of the time). A board without moves is worth 0.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+public class TablebaseGenerator
+{
+	public static final int MAX_CELLS = 9;		//The largest board that can be solved
+	public static final int EXPAND_CHUNK_BOARDS = 1 << 18;		//Boards whose successors are found and merged at a time
+	public static final int SLOTS_PER_BUCKET = 1 << 24;			//Tablebase slots whose boards are sorted and put at a time
+	public static final double LOAD_FACTOR = 0.7;				//Fraction of the tablebase slots that hold a board
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java TablebaseGenerator rows columns [outputFile]");
+			System.exit(1);
+		}
+		int rows = Integer.parseInt(args[0]);
+		int columns = Integer.parseInt(args[1]);
+		File outputFile = args.length > 2 ? new File(args[2]) : Tablebase.fileFor(rows, columns);
+
+		long startNanos = System.nanoTime();
+		TablebaseGenerator generator = new TablebaseGenerator(rows, columns);
+		generator.generate(outputFile);
+		System.out.printf("Wrote %d boards to %s in %.1f s%n", generator.totalBoards, outputFile, (System.nanoTime() - startNanos) / 1e9);
+	}
+
+	public TablebaseGenerator(int rows, int columns)
+	{
+		//Creates a generator for the board size. Throws an IllegalArgumentException if the board is too big to solve
+		if(rows < 1 || columns < 1 || rows * columns > MAX_CELLS)
+			throw new IllegalArgumentException("Tablebases can only be generated for boards of at most " + MAX_CELLS + " cells");
+		this.rows = rows;
+		this.columns = columns;
+		this.totalCells = rows * columns;
+	}
+
+	public void generate(File outputFile) throws IOException
+	{
+		//Solves every reachable board and writes them to the output file
+
+		layerDirectory = Files.createTempDirectory("tablebase");
+		try
+		{
+			collectLayers();
+			solveLayers();
+			writeTablebase(outputFile);
+		}
+		finally
+		{
+			closeBuckets();
+			for(int layer = 0; layer < totalLayers; layer ++)	Files.deleteIfExists(layerFile(layer));
+			for(int bucket = 0; bucket < bucketChannels.length; bucket ++)	Files.deleteIfExists(bucketFile(bucket));
+			Files.deleteIfExists(layerDirectory);
+		}
+	}
+
+	private final int rows;						//Rows of the solved board
+	private final int columns;					//Columns of the solved board
+	private final int totalCells;				//rows * columns
+	private Path layerDirectory;				//Temporary folder holding the sorted boards of every layer, layer k has a cell sum of 2 * k
+	private int totalLayers;					//Number of layers written to layerDirectory
+	private final long[][] solvedBoards = new long[3][];	//Boards of the solved layers a layer leads to, by layer % 3
+	private final float[][] solvedScores = new float[3][];	//Expected scores of the boards in solvedBoards
+	private long totalBoards;					//Number of reachable boards
+	private long capacity;						//Slots of the tablebase
+	private FileChannel[] bucketChannels = new FileChannel[0];	//Temporary files of the solved boards of every range of slots
+	private ByteBuffer[] bucketBuffers;			//Solved boards not yet written to bucketChannels
+
+	private void collectLayers() throws IOException
+	{
+		/*
+		 * Forward pass. Collects every board that can be reached right after a spawn into its layer
+		 */
+
+		List<long[]> pendingLayers = new ArrayList<>();		//Sorted boards found so far for each layer that is not finished yet
+
+		//Every opening board has two cells of 2 or 4
+		for(int first = 0; first < totalCells; first ++)
+			for(int second = first + 1; second < totalCells; second ++)
+				for(int firstExponent = 1; firstExponent <= 2; firstExponent ++)
+					for(int secondExponent = 1; secondExponent <= 2; secondExponent ++)
+					{
+						long board = canonical(PackedBoard.setExponent(PackedBoard.setExponent(0, first, firstExponent), second, secondExponent));
+						addPending(pendingLayers, layerOf(board), new long[]{board});
+					}
+
+		//Finish the layers from the lowest sum up. A layer is finished once every layer below it has been expanded
+		for(int layer = 0; layer < pendingLayers.size(); layer ++)
+		{
+			long[] boards = pendingLayers.get(layer) == null ? new long[0] : pendingLayers.get(layer);
+			pendingLayers.set(layer, null);
+			writeLayer(layer, boards);
+			totalLayers = layer + 1;
+			totalBoards += boards.length;
+
+			//Expand the layer. Spawning a 2 leads to the next layer and spawning a 4 leads to the layer after that
+			for(int spawnExponent = 1; spawnExponent <= 2; spawnExponent ++)
+				for(int start = 0; start < boards.length; start += EXPAND_CHUNK_BOARDS)
+				{
+					int exponent = spawnExponent;
+					long[] successors = Arrays.stream(boards, start, Math.min(boards.length, start + EXPAND_CHUNK_BOARDS)).parallel()
+							.flatMap(board -> successors(board, exponent)).toArray();
+					if(successors.length > 0)	addPending(pendingLayers, layer + exponent, sortUnique(successors));
+				}
+		}
+	}
+
+	private void solveLayers() throws IOException
+	{
+		/*
+		 * Retrograde pass. Solves the layers from the highest sum down so the layers a board leads to are already solved, and adds
+		 * every solved board to the bucket of its tablebase slot
+		 */
+
+		capacity = Math.max(1, (long)Math.ceil(totalBoards / LOAD_FACTOR));
+		int totalBuckets = (int)((capacity + SLOTS_PER_BUCKET - 1) / SLOTS_PER_BUCKET);
+		bucketChannels = new FileChannel[totalBuckets];
+		bucketBuffers = new ByteBuffer[totalBuckets];
+		for(int bucket = 0; bucket < totalBuckets; bucket ++)
+		{
+			bucketChannels[bucket] = FileChannel.open(bucketFile(bucket), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			bucketBuffers[bucket] = ByteBuffer.allocateDirect(BUCKET_BUFFER_BOARDS * Tablebase.SLOT_BYTES);
+		}
+
+		for(int layer = totalLayers - 1; layer >= 0; layer --)
+		{
+			long[] boards = readLayer(layer);
+			float[] scores = solveLayer(boards);
+			solvedBoards[layer % 3] = boards;			//Replaces layer + 3, which no layer below needs
+			solvedScores[layer % 3] = scores;
+			Files.delete(layerFile(layer));
+		}
+		for(int bucket = 0; bucket < totalBuckets; bucket ++)	writeBucket(bucket);
+		closeBuckets();
+	}
+
+	private void writeTablebase(File outputFile) throws IOException
+	{
+		/*
+		 * Puts the solved boards in the tablebase one bucket at a time. A bucket's boards are put in the order of their first slot so
+		 * every put lands at or just after the previous one
+		 */
+
+		Tablebase tablebase = new Tablebase(outputFile, rows, columns, capacity);
+		try
+		{
+			for(int bucket = 0; bucket < bucketChannels.length; bucket ++)
+			{
+				ByteBuffer slots = ByteBuffer.wrap(Files.readAllBytes(bucketFile(bucket)));
+				int count = slots.capacity() / Tablebase.SLOT_BYTES;
+				long[] order = new long[count];				//Slot within the bucket in the high half, index in the low half
+				for(int index = 0; index < count; index ++)
+					order[index] = (slotOf(slots.getLong(index * Tablebase.SLOT_BYTES)) % SLOTS_PER_BUCKET) << 32 | index;
+				Arrays.parallelSort(order);
+				for(long slotAndIndex : order)
+				{
+					int offset = (int)slotAndIndex * Tablebase.SLOT_BYTES;
+					tablebase.put(slots.getLong(offset), slots.getFloat(offset + 8), MoveDirection.fromOrdinal(slots.getInt(offset + 12)));
+				}
+				Files.delete(bucketFile(bucket));
+			}
+			tablebase.flush();
+		}
+		finally
+		{
+			tablebase.close();
+		}
+	}
+
+	private float[] solveLayer(long[] boards) throws IOException
+	{
+		//Solves the boards of one layer, adds them to their buckets and returns their expected scores
+
+		float[] scores = new float[boards.length];
+		byte[] moves = new byte[boards.length];
+		IntStream.range(0, boards.length).parallel().forEach(index->
+		{
+			double bestScore = 0;
+			int bestMove = -1;
+			for(MoveDirection direction : MoveDirection.values())
+			{
+				long moved = PackedBoard.move(boards[index], rows, columns, direction);
+				if(moved == boards[index])	continue;
+				double score = PackedBoard.getMoveScore(boards[index], moved, totalCells) + expectedAfterSpawn(moved);
+				if(bestMove < 0 || score > bestScore)
+				{
+					bestScore = score;
+					bestMove = direction.ordinal();
+				}
+			}
+			scores[index] = (float)bestScore;
+			moves[index] = (byte)bestMove;
+		});
+		for(int index = 0; index < boards.length; index ++)
+		{
+			int bucket = (int)(slotOf(boards[index]) / SLOTS_PER_BUCKET);
+			ByteBuffer buffer = bucketBuffers[bucket];
+			buffer.putLong(boards[index]).putFloat(scores[index]).putInt(moves[index]);
+			if(!buffer.hasRemaining())	writeBucket(bucket);
+		}
+		return scores;
+	}
+
+	private long slotOf(long board)
+	{
+		//Returns the first slot of the tablebase the board is looked up in
+		return Tablebase.firstSlot(board, capacity);
+	}
+
+	private Path bucketFile(int bucket)
+	{
+		return layerDirectory.resolve("slots" + bucket);
+	}
+
+	private void writeBucket(int bucket) throws IOException
+	{
+		//Writes the solved boards waiting in the bucket's buffer to its temporary file
+		ByteBuffer buffer = bucketBuffers[bucket];
+		buffer.flip();
+		while(buffer.hasRemaining())	bucketChannels[bucket].write(buffer);
+		buffer.clear();
+	}
+
+	private void closeBuckets() throws IOException
+	{
+		for(FileChannel channel : bucketChannels)	if(channel != null)	channel.close();
+	}
+
+	private Path layerFile(int layer)
+	{
+		return layerDirectory.resolve("layer" + layer);
+	}
+
+	private void writeLayer(int layer, long[] boards) throws IOException
+	{
+		//Writes the sorted boards of a finished layer to its temporary file
+		try(FileChannel channel = FileChannel.open(layerFile(layer), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(LAYER_BUFFER_BOARDS * Long.BYTES);
+			for(int start = 0; start < boards.length; start += LAYER_BUFFER_BOARDS)
+			{
+				buffer.clear();
+				buffer.asLongBuffer().put(boards, start, Math.min(LAYER_BUFFER_BOARDS, boards.length - start));
+				buffer.limit(Math.min(LAYER_BUFFER_BOARDS, boards.length - start) * Long.BYTES);
+				while(buffer.hasRemaining())	channel.write(buffer);
+			}
+		}
+	}
+
+	private long[] readLayer(int layer) throws IOException
+	{
+		//Reads the sorted boards of a layer back from its temporary file
+		try(FileChannel channel = FileChannel.open(layerFile(layer), StandardOpenOption.READ))
+		{
+			long[] boards = new long[(int)(channel.size() / Long.BYTES)];
+			ByteBuffer buffer = ByteBuffer.allocateDirect(LAYER_BUFFER_BOARDS * Long.BYTES);
+			for(int start = 0; start < boards.length; start += LAYER_BUFFER_BOARDS)
+			{
+				int count = Math.min(LAYER_BUFFER_BOARDS, boards.length - start);
+				buffer.clear().limit(count * Long.BYTES);
+				while(buffer.hasRemaining())	if(channel.read(buffer) < 0)	throw new IOException(layerFile(layer) + " is cut short");
+				buffer.flip();
+				buffer.asLongBuffer().get(boards, start, count);
+			}
+			return boards;
+		}
+	}
+
+	private static final int LAYER_BUFFER_BOARDS = 1 << 16;		//Boards copied to or from a layer file at a time
+	private static final int BUCKET_BUFFER_BOARDS = 1 << 12;		//Solved boards a bucket holds before they are written to its file
+
+	private double expectedAfterSpawn(long moved)
+	{
+		//Returns the average expected score over every cell that a 2 or 4 can be spawned in after a move
+
+		int emptyCells = 0;
+		double total = 0;
+		for(int cell = 0; cell < totalCells; cell ++)
+		{
+			if(PackedBoard.getExponent(moved, cell) != 0)	continue;
+			emptyCells ++;
+			total += (1 - PackedBoard.SPAWN_FOUR_PROBABILITY) * solvedScore(canonical(PackedBoard.setExponent(moved, cell, 1)));
+			total += PackedBoard.SPAWN_FOUR_PROBABILITY * solvedScore(canonical(PackedBoard.setExponent(moved, cell, 2)));
+		}
+		return emptyCells == 0 ? 0 : total / emptyCells;
+	}
+
+	private double solvedScore(long board)
+	{
+		//Returns the expected score of a canonical board in an already solved layer
+		int slot = layerOf(board) % 3;
+		return solvedScores[slot][Arrays.binarySearch(solvedBoards[slot], board)];
+	}
+
+	private LongStream successors(long board, int spawnExponent)
+	{
+		//Returns the canonical form of every board that follows the board by making a move and spawning a cell with the exponent
+
+		LongStream.Builder found = LongStream.builder();
+		for(MoveDirection direction : MoveDirection.values())
+		{
+			long moved = PackedBoard.move(board, rows, columns, direction);
+			if(moved == board)	continue;
+			for(int cell = 0; cell < totalCells; cell ++)
+				if(PackedBoard.getExponent(moved, cell) == 0)	found.add(canonical(PackedBoard.setExponent(moved, cell, spawnExponent)));
+		}
+		return found.build();
+	}
+
+	private long canonical(long board)
+	{
+		return PackedBoard.transform(board, rows, columns, PackedBoard.findCanonicalSymmetry(board, rows, columns));
+	}
+
+	private int layerOf(long board)
+	{
+		//Returns the layer of the board. Every cell value is even so the sum is divided by 2 to skip the odd layers
+		return (int)(PackedBoard.getTileSum(board, totalCells) / 2);
+	}
+
+	private static void addPending(List<long[]> pendingLayers, int layer, long[] boards)
+	{
+		//Merges sorted boards without duplicates into a layer that is not finished yet
+		while(pendingLayers.size() <= layer)	pendingLayers.add(null);
+		long[] pending = pendingLayers.get(layer);
+		pendingLayers.set(layer, pending == null ? boards : mergeUnique(pending, boards));
+	}
+
+	private static long[] sortUnique(long[] boards)
+	{
+		//Sorts the boards and removes duplicates
+		Arrays.parallelSort(boards);
+		int unique = 0;
+		for(int index = 0; index < boards.length; index ++)
+			if(unique == 0 || boards[index] != boards[unique - 1])	boards[unique ++] = boards[index];
+		return unique == boards.length ? boards : Arrays.copyOf(boards, unique);
+	}
+
+	private static long[] mergeUnique(long[] first, long[] second)
+	{
+		//Merges two sorted arrays without duplicates into one sorted array without duplicates
+		long[] merged = new long[first.length + second.length];
+		int firstIndex = 0, secondIndex = 0, unique = 0;
+		while(firstIndex < first.length || secondIndex < second.length)
+		{
+			long board;
+			if(secondIndex == second.length || firstIndex < first.length && first[firstIndex] <= second[secondIndex])	board = first[firstIndex ++];
+			else																										board = second[secondIndex ++];
+			if(unique == 0 || merged[unique - 1] != board)	merged[unique ++] = board;
+		}
+		return unique == merged.length ? merged : Arrays.copyOf(merged, unique);
+	}
+}
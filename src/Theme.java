@@ -0,0 +1,162 @@
+/*
+ * The colors of the game window. A theme is compiled into one stylesheet that every window and dialog shares, so no node of the board
+ * has an inline style that JavaFX has to parse on its own.
+ * Every cell has one style class for the exponent of its value (tile-e0 for an empty cell, tile-e1 for 2, tile-e2 for 4 ...) and the
+ * stylesheet colors the tile and text of each class, so changing how a cell looks is a single style class swap. Switching themes only
+ * swaps the stylesheet of the scene, nothing is rebuilt.
+ * The layout rules (alignment, spacing and padding) are the same in every theme.
+ * Colors are ARGB ints so boards can also be drawn without JavaFX, for example by the replay exporter.
+ */
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public final class Theme
+{
+	public static final int MAX_EXPONENT = 31;		//The largest exponent a style class is made for. Cell values are ints
+
+	public static final Theme CLASSIC = new Theme("Classic", 0xFFF4F4F4, 0xFF808080, 0xFF000000, 0xFFFFFFFF, 0xFF0000FF, 0xFF0000FF, 0xFFFFFFFF, 0xFF000000,
+			new int[] {0xFFA9A9A9, 0xFFEEE4DA, 0xFFDFC99F, 0xFFF2B179, 0xFFF59563, 0xFFF67C5F, 0xFFF65E3B, 0xFFEDCF72, 0xFFEDCC61, 0xFFEDC850,
+				0xFFEDC53F, 0xFFEDC22E});
+	public static final Theme DARK = new Theme("Dark", 0xFF202020, 0xFF303030, 0xFF101010, 0xFFF0F0F0, 0xFF1E3A5F, 0xFF5F1E1E, 0xFFF0F0F0, 0xFF202020,
+			new int[] {0xFF484848, 0xFF5A6B7C, 0xFF4F6D8A, 0xFF3F7FBF, 0xFF2F8FCF, 0xFF1F9FDF, 0xFF0FAFEF, 0xFF6A4FBF, 0xFF7F3FBF, 0xFF942FBF,
+				0xFFA91FBF, 0xFFBF0FBF});
+	public static final Theme HIGH_CONTRAST = new Theme("High Contrast", 0xFF000000, 0xFF000000, 0xFF000000, 0xFFFFFFFF, 0xFF000000, 0xFF000000, 0xFFFFFF00, 0xFF000000,
+			new int[] {0xFF1A1A1A, 0xFFFFFFFF, 0xFFFFFF00, 0xFF00FFFF, 0xFF00FF00, 0xFFFF00FF, 0xFFFF8000, 0xFF0080FF, 0xFFFF0000, 0xFF8000FF,
+				0xFF00A000, 0xFFA00000});
+
+	public static List<Theme> getThemes()
+	{
+		//Returns every built in theme. The first theme is the default
+		return List.of(CLASSIC, DARK, HIGH_CONTRAST);
+	}
+
+	public static Theme forName(String name)
+	{
+		//Returns the built in theme with the name, ignoring case, or the default theme if there is none
+		for(Theme theme : getThemes())
+			if(theme.NAME.equalsIgnoreCase(name))	return theme;
+		return CLASSIC;
+	}
+
+	public static String getStyleClass(int exponent)
+	{
+		//Returns the style class of a cell whose value has the exponent (0 for an empty cell)
+		return TILE_STYLE_CLASSES[Math.min(Math.max(exponent, 0), MAX_EXPONENT)];
+	}
+
+	public final String NAME;
+
+	public int getTileColor(int exponent)
+	{
+		//Returns the ARGB color of a cell whose value has the exponent (0 for an empty cell). Cells past the last tile color use the big tile color
+		return exponent < tileColors.length ? tileColors[Math.max(exponent, 0)] : bigTileColor;
+	}
+
+	public int getTextColor(int exponent)
+	{
+		//Returns the ARGB color of the text of a cell whose value has the exponent. 2 and 4 have dark text and every other value light text
+		return exponent < 3 ? darkTextColor : lightTextColor;
+	}
+
+	public int getBoardColor()
+	{
+		//Returns the ARGB color of the board behind the cells
+		return boardColor;
+	}
+
+	public synchronized String getStylesheetUrl() throws IOException
+	{
+		/*
+		 * Returns the URL of the stylesheet of the theme. The stylesheet is written to a temporary file the first time it is needed and
+		 * shared by every scene after that
+		 */
+
+		if(stylesheetUrl != null)	return stylesheetUrl;
+		File stylesheetFile = File.createTempFile("2048-" + NAME.replace(' ', '-').toLowerCase() + "-", ".css");
+		stylesheetFile.deleteOnExit();
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(stylesheetFile), StandardCharsets.UTF_8))
+		{
+			writer.write(toStylesheet());
+		}
+		stylesheetUrl = stylesheetFile.toURI().toString();
+		return stylesheetUrl;
+	}
+
+	public String toStylesheet()
+	{
+		//Compiles the theme into the text of a stylesheet
+
+		StringBuilder css = new StringBuilder();
+
+		//Layout. The same in every theme
+		css.append(".scores-panel { -fx-alignment: center; -fx-spacing: 5; }\n");
+		css.append(".command-panel-right { -fx-alignment: center-right; -fx-spacing: 5; -fx-padding: 5 0 5 0; }\n");
+		css.append(".command-panel-left { -fx-alignment: center-left; -fx-spacing: 5; -fx-padding: 5 0 5 0; }\n");
+		css.append(".timeline-panel { -fx-alignment: center; -fx-spacing: 5; -fx-padding: 5 0 0 0; }\n");
+		css.append(".end-game-backdrop { -fx-arc-height: 100; -fx-arc-width: 100; }\n");
+		css.append(".end-game-status { -fx-font-size: 22; -fx-font-weight: bold; -fx-alignment: center; }\n");
+		css.append(".end-game-high-score { -fx-font-size: 16; -fx-alignment: center; }\n");
+
+		//Colors
+		css.append(".game-root { -fx-background-color: ").append(toCss(windowColor)).append("; }\n");
+		css.append(".board { -fx-background-color: ").append(toCss(boardColor)).append("; }\n");
+		css.append(".cell-border { -fx-fill: ").append(toCss(boardColor)).append("; }\n");
+		css.append(".end-game-backdrop { -fx-fill: ").append(toCss(highScoreColor)).append("; }\n");
+		css.append(".end-game-backdrop.game-over { -fx-fill: ").append(toCss(gameOverColor)).append("; }\n");
+		css.append(".end-game-status, .end-game-high-score { -fx-text-fill: ").append(toCss(dialogTextColor)).append("; }\n");
+		for(int exponent = 0; exponent <= MAX_EXPONENT; exponent ++)
+		{
+			css.append('.').append(getStyleClass(exponent)).append(" .cell-tile { -fx-fill: ").append(toCss(getTileColor(exponent))).append("; }\n");
+			css.append('.').append(getStyleClass(exponent)).append(" .cell-text { -fx-text-fill: ").append(toCss(getTextColor(exponent))).append("; }\n");
+		}
+		return css.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return NAME;
+	}
+
+	private static final String[] TILE_STYLE_CLASSES = new String[MAX_EXPONENT + 1];	//"tile-e0" ... "tile-e31"
+	static
+	{
+		for(int exponent = 0; exponent <= MAX_EXPONENT; exponent ++)	TILE_STYLE_CLASSES[exponent] = "tile-e" + exponent;
+	}
+
+	private final int boardColor;			//Behind the cells and the border of every cell
+	private final int darkTextColor;		//Text of the 2 and 4 cells
+	private final int lightTextColor;		//Text of every other cell
+	private final int highScoreColor;		//Background of the end game dialog while a new high score is shown
+	private final int gameOverColor;		//Background of the end game dialog once "Game Over" is shown
+	private final int dialogTextColor;		//Text of the end game dialog
+	private final int windowColor;			//Background of the window around the board
+	private final int[] tileColors;			//Color of the cells by exponent. tileColors[0] is an empty cell
+	private final int bigTileColor;			//Color of the cells larger than the last tile color
+	private String stylesheetUrl;			//The stylesheet file once it is written
+
+	private Theme(String name, int windowColor, int boardColor, int darkTextColor, int lightTextColor, int highScoreColor, int gameOverColor,
+			int dialogTextColor, int bigTileColor, int[] tileColors)
+	{
+		this.NAME = name;
+		this.boardColor = boardColor;
+		this.darkTextColor = darkTextColor;
+		this.lightTextColor = lightTextColor;
+		this.highScoreColor = highScoreColor;
+		this.gameOverColor = gameOverColor;
+		this.dialogTextColor = dialogTextColor;
+		this.bigTileColor = bigTileColor;
+		this.tileColors = tileColors;
+		this.windowColor = windowColor;
+	}
+
+	private static String toCss(int argb)
+	{
+		return String.format("#%06x", argb & 0xFFFFFF);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * A transposition table for searches over packed boards that lives outside of the Java heap. The table is one or more direct byte
+ * buffers so no matter how large it is the garbage collector never scans or copies an entry.
+ * The table is open addressed. A board hashes to a bucket of 4 slots. A slot is two longs:
+ *		data:	bit 63 set when the slot is used, bits 32-39 search depth, bits 0-31 float value
+ *		check:	the board XOR data
+ * Inserts are lock free. A writer claims a slot by compare and swap on the data word and then publishes the check word. A reader only
+ * trusts a slot when check XOR data equals the board, so a slot that is being written by another thread reads as a miss instead of
+ * returning another board's value. Racing writers can lose an entry but never corrupt one.
+ * Replacement is depth preferred. A board replaces the slot already holding it, then an empty slot, then the slot of the bucket searched
+ * with the smallest depth, and only if the new entry was searched at least as deep.
+ */
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TranspositionTable
+{
+	public static final int BYTES_PER_SLOT = 16;
+	public static final int BUCKET_SLOTS = 4;
+
+	public TranspositionTable(int sizeInMegabytes)
+	{
+		/*
+		 * Creates an empty table that uses about sizeInMegabytes of memory outside of the heap. The number of slots is rounded down to
+		 * a power of 2. Throws an IllegalArgumentException if the size is less than 1
+		 */
+
+		if(sizeInMegabytes < 1)	throw new IllegalArgumentException("The table must be at least 1 MB");
+		long slots = Long.highestOneBit((long)sizeInMegabytes * 1024 * 1024 / BYTES_PER_SLOT);
+		capacity = Math.max(slots, BUCKET_SLOTS);
+		int totalBuffers = (int)((capacity + SLOTS_PER_BUFFER - 1) / SLOTS_PER_BUFFER);
+		buffers = new ByteBuffer[totalBuffers];
+		for(int buffer = 0; buffer < totalBuffers; buffer ++)
+		{
+			long slotsInBuffer = Math.min(SLOTS_PER_BUFFER, capacity - (long)buffer * SLOTS_PER_BUFFER);
+			buffers[buffer] = ByteBuffer.allocateDirect((int)(slotsInBuffer * BYTES_PER_SLOT)).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	public double probeValue(long board, int minimumDepth)
+	{
+		//Returns the stored value of the board if it was found with a depth of at least minimumDepth, otherwise NaN. Allocates nothing
+
+		long bucket = bucketOf(board);
+		for(int position = 0; position < BUCKET_SLOTS; position ++)
+		{
+			long slot = bucket + position;
+			ByteBuffer buffer = bufferFor(slot);
+			int offset = offsetOf(slot);
+			long data = (long)SLOT_WORDS.getVolatile(buffer, offset);
+			if(data == 0)	break;		//Slots are filled in order so the board is not further in the bucket
+			if(((long)SLOT_WORDS.getVolatile(buffer, offset + 8) ^ data) != board)	continue;
+
+			if(depthOf(data) < minimumDepth)	break;
+			hits.increment();
+			return Float.intBitsToFloat((int)data);
+		}
+		misses.increment();
+		return Double.NaN;
+	}
+
+	public void store(long board, int depth, double value)
+	{
+		/*
+		 * Stores the value of a board searched to depth. Safe to call from any number of threads at once
+		 */
+
+		long data = USED_BIT | (long)(depth & 0xFF) << 32 | (Float.floatToRawIntBits((float)value) & 0xFFFFFFFFL);
+		long bucket = bucketOf(board);
+
+		//Find the slot holding the board, the first empty slot or the shallowest slot of the bucket
+		long replacedSlot = -1;
+		long replacedData = 0;
+		boolean sameBoard = false;
+		for(int position = 0; position < BUCKET_SLOTS; position ++)
+		{
+			long slot = bucket + position;
+			ByteBuffer buffer = bufferFor(slot);
+			int offset = offsetOf(slot);
+			long existing = (long)SLOT_WORDS.getVolatile(buffer, offset);
+			if(existing == 0 || ((long)SLOT_WORDS.getVolatile(buffer, offset + 8) ^ existing) == board)
+			{
+				replacedSlot = slot;
+				replacedData = existing;
+				sameBoard = existing != 0;
+				break;
+			}
+			if(replacedSlot < 0 || depthOf(existing) < depthOf(replacedData))
+			{
+				replacedSlot = slot;
+				replacedData = existing;
+			}
+		}
+
+		//Never replace a deeper search with a shallower one
+		if(replacedData != 0 && depthOf(replacedData) > depth)
+		{
+			if(!sameBoard)	collisions.increment();
+			return;
+		}
+
+		//Claim the slot. If another thread changed it first then this entry is dropped rather than retried
+		ByteBuffer buffer = bufferFor(replacedSlot);
+		int offset = offsetOf(replacedSlot);
+		if(!SLOT_WORDS.compareAndSet(buffer, offset, replacedData, data))
+		{
+			collisions.increment();
+			return;
+		}
+		SLOT_WORDS.setVolatile(buffer, offset + 8, board ^ data);
+		stores.increment();
+		if(replacedData != 0 && !sameBoard)	evictions.increment();
+	}
+
+	public void clear()
+	{
+		//Empties every slot and resets the counters. Must not be called while another thread uses the table
+		for(ByteBuffer buffer : buffers)
+			for(int offset = 0; offset < buffer.capacity(); offset += 8)
+				buffer.putLong(offset, 0);
+		hits.reset();
+		misses.reset();
+		collisions.reset();
+		evictions.reset();
+		stores.reset();
+	}
+
+	public long getCapacity()		{ return capacity; }				//Number of slots in the table
+	public long getHits()			{ return hits.sum(); }				//Probes that found a deep enough entry
+	public long getMisses()			{ return misses.sum(); }			//Probes that found nothing usable
+	public long getCollisions()		{ return collisions.sum(); }		//Stores dropped because the slot was deeper or changed by another thread
+	public long getEvictions()		{ return evictions.sum(); }			//Stores that replaced the entry of another board
+	public long getStores()			{ return stores.sum(); }			//Entries written
+
+	public double getHitRate()
+	{
+		//Returns the fraction of probes that were hits or 0 if nothing has been probed
+		long hitCount = hits.sum();
+		long probes = hitCount + misses.sum();
+		return probes == 0 ? 0 : (double)hitCount / probes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d slots, hit rate %.1f%%, %d stores, %d collisions, %d evictions",
+				capacity, getHitRate() * 100, getStores(), getCollisions(), getEvictions());
+	}
+
+	private static final long USED_BIT = 1L << 63;
+	private static final int SLOTS_PER_BUFFER = 1 << 26;	//A direct buffer is at most 2GB so the slots are split into 1GB buffers
+	private static final VarHandle SLOT_WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final ByteBuffer[] buffers;		//The slots of the table, SLOTS_PER_BUFFER slots per buffer
+	private final long capacity;			//Number of slots. Always a power of 2
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+
+	private long bucketOf(long board)
+	{
+		//Returns the first slot of the bucket of the board
+		return PackedBoard.hash(board) & (capacity - 1) & ~(long)(BUCKET_SLOTS - 1);
+	}
+
+	private ByteBuffer bufferFor(long slot)
+	{
+		return buffers[(int)(slot / SLOTS_PER_BUFFER)];
+	}
+
+	private static int offsetOf(long slot)
+	{
+		return (int)(slot % SLOTS_PER_BUFFER) * BYTES_PER_SLOT;
+	}
+
+	private static int depthOf(long data)
+	{
+		return (int)(data >>> 32) & 0xFF;
+	}
+}
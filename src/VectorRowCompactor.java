@@ -0,0 +1,99 @@
+/*
+ * A RowCompactor that uses the Vector API (jdk.incubator.vector) to move UP and DOWN. Compile and run with --add-modules
+ * jdk.incubator.vector. RowCompactor.getInstance() only creates one when the module is there.
+ * One lane is one column, so a vector is a slice of one whole row (32 cells with AVX2, 64 with AVX-512) and every column of the slice is
+ * moved at the same time. The empty cells are bubbled to the end of the columns by swapping neighboring rows where the nearer cell is
+ * empty, then equal pairs are found by comparing neighboring rows from the nearest one out, and in the lanes that merged the rows behind
+ * the merge are pulled one row closer. Both take rows^2 row operations, so boards with more than MAX_COLUMN_ROWS rows and the columns
+ * left over after the last whole vector are moved one cell at a time.
+ * LEFT and RIGHT are moved one cell at a time. A row packed across lanes needs a lane compress that the Vector API of Java 17 does not
+ * have, and packing with masks and merging with shifted compares measured slower than the scalar loop at every width and fill.
+ */
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorRowCompactor extends RowCompactor
+{
+	public static final int MAX_COLUMN_ROWS = 16;		//Taller boards move their columns one cell at a time
+
+	@Override
+	public String getName()
+	{
+		return "vector " + LANES + " lanes";
+	}
+
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+	private static final int LANES = SPECIES.length();
+
+	@Override
+	protected long moveColumns(byte[] cells, int rows, int columns, boolean towardLastRow, byte[] cellsOut)
+	{
+		//Moves every column toward row 0 or the last row and returns the score of the merges
+
+		if(rows > MAX_COLUMN_ROWS || columns < LANES)	return super.moveColumns(cells, rows, columns, towardLastRow, cellsOut);
+
+		System.arraycopy(cells, 0, cellsOut, 0, rows * columns);
+		int first = towardLastRow ? (rows - 1) * columns : 0;	//The start of the row the columns are shifted toward
+		int stride = towardLastRow ? -columns : columns;		//From the start of one row to the start of the next one away from first
+		long score = 0;
+		int column = 0;
+		for(; column + LANES <= columns; column += LANES)
+		{
+			bubbleEmptyCells(cellsOut, first + column, stride, rows);
+			score += mergeRows(cellsOut, first + column, stride, rows);
+		}
+		for(; column < columns; column ++)	score += moveLine(cells, cellsOut, first + column, stride, rows);
+		return score;
+	}
+
+	private static void bubbleEmptyCells(byte[] cells, int first, int stride, int rows)
+	{
+		//Moves the empty cells of every lane to the far end of the column without changing the order of the other cells
+
+		for(int pass = 1; pass < rows; pass ++)
+		{
+			boolean swapped = false;
+			for(int row = rows - 2; row >= 0; row --)
+			{
+				ByteVector near = ByteVector.fromArray(SPECIES, cells, first + row * stride);
+				ByteVector far = ByteVector.fromArray(SPECIES, cells, first + (row + 1) * stride);
+				VectorMask<Byte> swap = near.compare(VectorOperators.EQ, (byte)0).and(far.compare(VectorOperators.NE, (byte)0));
+				if(!swap.anyTrue())	continue;
+				near.blend(far, swap).intoArray(cells, first + row * stride);
+				far.blend((byte)0, swap).intoArray(cells, first + (row + 1) * stride);
+				swapped = true;
+			}
+			if(!swapped)	return;
+		}
+	}
+
+	private static long mergeRows(byte[] cells, int first, int stride, int rows)
+	{
+		//Merges the equal pairs of every lane of the bubbled columns, nearest pair first, and returns the score of the merges
+
+		long score = 0;
+		for(int row = 0; row + 1 < rows; row ++)
+		{
+			ByteVector near = ByteVector.fromArray(SPECIES, cells, first + row * stride);
+			ByteVector far = ByteVector.fromArray(SPECIES, cells, first + (row + 1) * stride);
+			VectorMask<Byte> merge = near.compare(VectorOperators.EQ, far).and(near.compare(VectorOperators.NE, (byte)0));
+			if(!merge.anyTrue())	continue;
+
+			int rowStart = first + row * stride;
+			near.blend(near.add((byte)1), merge).intoArray(cells, rowStart);
+			for(long lanes = merge.toLong(); lanes != 0; lanes &= lanes - 1)	score += 1L << cells[rowStart + Long.numberOfTrailingZeros(lanes)];
+
+			//Pull the rows behind the merge one row closer in the merged lanes
+			for(int behind = row + 1; behind + 1 < rows; behind ++)
+			{
+				ByteVector pulled = ByteVector.fromArray(SPECIES, cells, first + (behind + 1) * stride);
+				ByteVector.fromArray(SPECIES, cells, first + behind * stride).blend(pulled, merge).intoArray(cells, first + behind * stride);
+			}
+			ByteVector last = ByteVector.fromArray(SPECIES, cells, first + (rows - 1) * stride);
+			last.blend((byte)0, merge).intoArray(cells, first + (rows - 1) * stride);
+		}
+		return score;
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Tunes the HeuristicWeights of a board size by playing games with them and writes the best weights to HeuristicWeights.fileFor()
+ * where the hints of the game window load them from.
+ * Usage: java WeightTuner rows columns [generations] [candidates] [gamesPerCandidate]
+ *
+ * The tuner is an evolution strategy over the logarithm of the four weights (the search only compares values, so only the ratios of
+ * the weights matter and every weight stays positive). Each generation:
+ *		1. Samples candidates from a normal distribution around the mean with a standard deviation per weight. The first candidate is
+ *		   the mean itself.
+ *		2. Plays gamesPerCandidate headless games with every candidate, searching SEARCH_DEPTH moves ahead. Every candidate plays the
+ *		   same seeded games so a candidate is never ahead because it was spawned better cells. The games of every candidate are
+ *		   played in parallel on every core.
+ *		3. Moves the mean to a weighted average of the better half of the candidates and shrinks or grows the standard deviation of
+ *		   each weight to how far apart the better half is.
+ * The fitness of a candidate is its average score. The best weights so far play the same games as the candidates every generation, and
+ * the mean replaces them (and is written to the weights file) only when it beats them on those games. Comparing averages of different
+ * generations would keep whichever generation happened to get the luckiest spawns.
+ * After every generation the state of the tuner is written to a checkpoint file, so a tuner that was stopped picks up at the
+ * generation after the last one it finished. The checkpoint is deleted once every generation is done.
+ */
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+public class WeightTuner
+{
+	public static final int DEFAULT_GENERATIONS = 30;
+	public static final int DEFAULT_CANDIDATES = 16;
+	public static final int DEFAULT_GAMES_PER_CANDIDATE = 32;
+	public static final int SEARCH_DEPTH = 2;				//Moves searched ahead by the games of the tuner. Deeper is stronger but much slower
+	public static final int MAX_MOVES = 100_000;			//Moves after which a game is stopped, so weights that never lose still finish
+	public static final double INITIAL_SIGMA = 0.5;			//Starting standard deviation of the logarithm of every weight
+	public static final double MIN_SIGMA = 0.02;			//The standard deviation never shrinks below this so the search can still move
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java WeightTuner rows columns [generations] [candidates] [gamesPerCandidate]");
+			System.exit(1);
+		}
+		int rows = Integer.parseInt(args[0]);
+		int columns = Integer.parseInt(args[1]);
+		int generations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_GENERATIONS;
+		int candidates = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_CANDIDATES;
+		int gamesPerCandidate = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_GAMES_PER_CANDIDATE;
+
+		long startNanos = System.nanoTime();
+		WeightTuner tuner = new WeightTuner(rows, columns, candidates, gamesPerCandidate, checkpointFileFor(rows, columns));
+		tuner.tune(generations, HeuristicWeights.fileFor(rows, columns));
+		System.out.printf("Wrote %s to %s in %.1f s%n", tuner.getBestWeights(), HeuristicWeights.fileFor(rows, columns), (System.nanoTime() - startNanos) / 1e9);
+	}
+
+	public static File checkpointFileFor(int rows, int columns)
+	{
+		//Returns the checkpoint file of a tuner of the board size
+		return new File("WeightTuner" + rows + "x" + columns + ".checkpoint");
+	}
+
+	public WeightTuner(int rows, int columns, int candidates, int gamesPerCandidate, File checkpointFile) throws IOException
+	{
+		/*
+		 * Creates a tuner that starts from the checkpoint file if there is one, otherwise from the weights the game window uses now.
+		 * Throws an IllegalArgumentException if the board can not be packed or there are fewer than 2 candidates
+		 */
+
+		if(!PackedBoard.fits(rows, columns))	throw new IllegalArgumentException("Only boards of at most " + PackedBoard.MAX_CELLS + " cells can be tuned");
+		if(candidates < 2 || gamesPerCandidate < 1)	throw new IllegalArgumentException("At least 2 candidates and 1 game per candidate are needed");
+		this.rows = rows;
+		this.columns = columns;
+		this.totalCells = rows * columns;
+		this.candidates = candidates;
+		this.gamesPerCandidate = gamesPerCandidate;
+		this.checkpointFile = checkpointFile;
+
+		if(checkpointFile.exists())	readCheckpoint();
+		else
+		{
+			bestWeights = HeuristicWeights.forBoard(rows, columns);
+			logMean = logOf(bestWeights.toArray());
+			sigma = new double[logMean.length];
+			Arrays.fill(sigma, INITIAL_SIGMA);
+			seed = System.nanoTime();
+		}
+	}
+
+	public void tune(int generations, File weightsFile) throws IOException
+	{
+		//Runs the generations that are left, writing the best weights to the weights file whenever they improve
+
+		for(; generation < generations; generation ++)
+		{
+			long generationStartNanos = System.nanoTime();
+			double[][] candidateLogs = sampleCandidates();
+			HeuristicWeights[] weights = new HeuristicWeights[candidates + 1];		//Every candidate and then the best weights so far
+			for(int candidate = 0; candidate < candidates; candidate ++)	weights[candidate] = HeuristicWeights.fromArray(expOf(candidateLogs[candidate]));
+			weights[candidates] = bestWeights;
+			double[] scores = playGames(weights);
+			if(bestScore == Double.NEGATIVE_INFINITY || scores[0] > scores[candidates])
+			{
+				bestScore = scores[0];
+				bestWeights = weights[0];
+				bestWeights.save(weightsFile, "Tuned by WeightTuner " + rows + "x" + columns + ". Average score " + Math.round(bestScore));
+			}
+			else	bestScore = scores[candidates];
+			updateDistribution(candidateLogs, scores);
+			writeCheckpoint(generation + 1);
+			System.out.printf("Generation %d: mean scored %,.0f, best weights %,.0f, best candidate %,.0f, mean is now %s (%.1f s)%n", generation + 1,
+					scores[0], scores[candidates], Arrays.stream(scores, 0, candidates).max().getAsDouble(), HeuristicWeights.fromArray(expOf(logMean)),
+					(System.nanoTime() - generationStartNanos) / 1e9);
+		}
+		checkpointFile.delete();
+	}
+
+	public HeuristicWeights getBestWeights()
+	{
+		//Returns the last mean that beat the best weights before it
+		return bestWeights;
+	}
+
+	private final int rows;
+	private final int columns;
+	private final int totalCells;						//rows * columns
+	private final int candidates;						//Candidates played each generation, the mean included
+	private final int gamesPerCandidate;				//Games played by every candidate each generation
+	private final File checkpointFile;					//Where the state is written after every generation
+	private final ConcurrentLinkedQueue<TranspositionTable> tables = new ConcurrentLinkedQueue<>();	//Tables of the games that are not being played
+	private int generation;								//The generation being played. Generations before it are done
+	private long seed;									//Seed of the whole run. The candidates and games of a generation are derived from it
+	private double[] logMean;							//Mean of the logarithm of every weight
+	private double[] sigma;								//Standard deviation of the logarithm of every weight
+	private HeuristicWeights bestWeights;				//The last mean that beat the best weights before it on the same games
+	private double bestScore = Double.NEGATIVE_INFINITY;	//Average score of bestWeights in the last generation. Nothing was written yet while infinite
+
+	private double[][] sampleCandidates()
+	{
+		//Returns the logarithm of the weights of every candidate. Candidate 0 is the mean. The same generation always samples the same candidates
+		SplittableRandom random = new SplittableRandom(seed + generation * 0x9E3779B97F4A7C15L);
+		double[][] candidateLogs = new double[candidates][];
+		candidateLogs[0] = logMean.clone();
+		for(int candidate = 1; candidate < candidates; candidate ++)
+		{
+			candidateLogs[candidate] = new double[logMean.length];
+			for(int weight = 0; weight < logMean.length; weight ++)
+				candidateLogs[candidate][weight] = logMean[weight] + sigma[weight] * random.nextGaussian();
+		}
+		return candidateLogs;
+	}
+
+	private double[] playGames(HeuristicWeights[] weights)
+	{
+		//Plays the same games of the generation with every weights in parallel and returns the average score of every weights
+
+		long[] gameScores = new long[weights.length * gamesPerCandidate];
+		IntStream.range(0, gameScores.length).parallel().forEach(game->
+			gameScores[game] = playGame(weights[game / gamesPerCandidate], seed ^ (generation * 0xC2B2AE3D27D4EB4FL + game % gamesPerCandidate)));
+
+		double[] scores = new double[weights.length];
+		for(int game = 0; game < gameScores.length; game ++)	scores[game / gamesPerCandidate] += (double)gameScores[game] / gamesPerCandidate;
+		return scores;
+	}
+
+	private long playGame(HeuristicWeights weights, long gameSeed)
+	{
+		/*
+		 * Plays one game with the weights until no move is possible and returns its score. The seed picks every spawned cell so
+		 * games with the same seed get the same spawns for as long as they make the same moves
+		 */
+
+		//Every game has a table of its own because the values in a table are only right for the weights that stored them
+		TranspositionTable table = tables.poll();
+		if(table == null)	table = new TranspositionTable(TABLE_MEGABYTES);
+		else				table.clear();
+		try
+		{
+			ExpectimaxSearch search = new ExpectimaxSearch(rows, columns, table, weights);
+			SplittableRandom random = new SplittableRandom(gameSeed);
+			long board = spawn(spawn(0, random), random);
+			long score = 0;
+			for(int move = 0; move < MAX_MOVES; move ++)
+			{
+				MoveDirection direction = search.findBestMove(board, SEARCH_DEPTH);
+				if(direction == null)	break;
+				long moved = PackedBoard.move(board, rows, columns, direction);
+				score += PackedBoard.getMoveScore(board, moved, totalCells);
+				board = spawn(moved, random);
+			}
+			return score;
+		}
+		finally
+		{
+			tables.add(table);
+		}
+	}
+
+	private static final int TABLE_MEGABYTES = 4;		//Size of the table of every game being played
+
+	private long spawn(long board, SplittableRandom random)
+	{
+		//Puts a 2 (or a 4 SPAWN_FOUR_PROBABILITY of the time) in a random empty cell
+		int emptyCell = random.nextInt(PackedBoard.countEmpty(board, totalCells));
+		int exponent = random.nextDouble() < PackedBoard.SPAWN_FOUR_PROBABILITY ? 2 : 1;
+		for(int cell = 0; ; cell ++)
+			if(PackedBoard.getExponent(board, cell) == 0 && emptyCell -- == 0)	return PackedBoard.setExponent(board, cell, exponent);
+	}
+
+	private void updateDistribution(double[][] candidateLogs, double[] scores)
+	{
+		/*
+		 * Moves the mean to the weighted average of the better half of the candidates, the best candidate weighing the most. Scores
+		 * after the candidates are not looked at. The
+		 * standard deviation of every weight moves part of the way to the spread of the better half around the old mean
+		 */
+
+		Integer[] ranking = new Integer[candidates];
+		for(int candidate = 0; candidate < candidates; candidate ++)	ranking[candidate] = candidate;
+		Arrays.sort(ranking, Comparator.comparingDouble(candidate->-scores[candidate]));
+
+		int parents = candidates / 2;
+		double[] parentWeights = new double[parents];
+		double totalWeight = 0;
+		for(int parent = 0; parent < parents; parent ++)
+		{
+			parentWeights[parent] = Math.log(parents + 0.5) - Math.log(parent + 1);
+			totalWeight += parentWeights[parent];
+		}
+
+		double[] newLogMean = new double[logMean.length];
+		double[] spread = new double[logMean.length];
+		for(int parent = 0; parent < parents; parent ++)
+		{
+			double[] parentLogs = candidateLogs[ranking[parent]];
+			for(int weight = 0; weight < logMean.length; weight ++)
+			{
+				newLogMean[weight] += parentWeights[parent] / totalWeight * parentLogs[weight];
+				spread[weight] += parentWeights[parent] / totalWeight * (parentLogs[weight] - logMean[weight]) * (parentLogs[weight] - logMean[weight]);
+			}
+		}
+		for(int weight = 0; weight < logMean.length; weight ++)
+			sigma[weight] = Math.max(MIN_SIGMA, SIGMA_LEARNING_RATE * Math.sqrt(spread[weight]) + (1 - SIGMA_LEARNING_RATE) * sigma[weight]);
+		logMean = newLogMean;
+	}
+
+	private static final double SIGMA_LEARNING_RATE = 0.3;	//How far the standard deviation moves to the spread of each generation
+
+	private void writeCheckpoint(int nextGeneration) throws IOException
+	{
+		//Writes the state of the tuner next to the checkpoint file and renames it over the checkpoint so a crash never leaves half of one
+
+		Properties properties = new Properties();
+		properties.setProperty("rows", Integer.toString(rows));
+		properties.setProperty("columns", Integer.toString(columns));
+		properties.setProperty("generation", Integer.toString(nextGeneration));
+		properties.setProperty("seed", Long.toString(seed));
+		properties.setProperty("bestScore", Double.toString(bestScore));
+		HeuristicWeights.fromArray(expOf(logMean)).toProperties(properties, "mean.");
+		HeuristicWeights.fromArray(sigma).toProperties(properties, "sigma.");
+		bestWeights.toProperties(properties, "best.");
+
+		File writtenFile = new File(checkpointFile.getPath() + ".tmp");
+		try(OutputStream output = new FileOutputStream(writtenFile))
+		{
+			properties.store(output, "WeightTuner checkpoint");
+		}
+		if(!writtenFile.renameTo(checkpointFile))
+		{
+			checkpointFile.delete();
+			if(!writtenFile.renameTo(checkpointFile))	throw new IOException(checkpointFile + " could not be replaced");
+		}
+	}
+
+	private void readCheckpoint() throws IOException
+	{
+		//Restores the state of the tuner written by writeCheckpoint(). Throws an IOException if the checkpoint is of another board size
+
+		Properties properties = new Properties();
+		try(InputStream input = new FileInputStream(checkpointFile))
+		{
+			properties.load(input);
+		}
+		try
+		{
+			if(Integer.parseInt(properties.getProperty("rows")) != rows || Integer.parseInt(properties.getProperty("columns")) != columns)
+				throw new IOException(checkpointFile + " is a checkpoint of a different board size");
+			generation = Integer.parseInt(properties.getProperty("generation"));
+			seed = Long.parseLong(properties.getProperty("seed"));
+			bestScore = Double.parseDouble(properties.getProperty("bestScore"));
+		}
+		catch(NullPointerException | NumberFormatException e)
+		{
+			throw new IOException(checkpointFile + " is not a WeightTuner checkpoint", e);
+		}
+		logMean = logOf(HeuristicWeights.fromProperties(properties, "mean.").toArray());
+		sigma = HeuristicWeights.fromProperties(properties, "sigma.").toArray();
+		bestWeights = HeuristicWeights.fromProperties(properties, "best.");
+	}
+
+	private static double[] logOf(double[] weights)
+	{
+		//Weights of 0 or less can not be searched in log space so they start at a small positive weight
+		return Arrays.stream(weights).map(weight->Math.log(Math.max(weight, 1e-3))).toArray();
+	}
+
+	private static double[] expOf(double[] logWeights)
+	{
+		return Arrays.stream(logWeights).map(Math::exp).toArray();
+	}
+}